@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** Runs the Gitlet benchmarks.  Gitlet works on the repository in the
+ *  current directory, which a Java program cannot change, so the
+ *  benchmarks cannot simply be run by JMH from wherever the user is:
+ *  they would build their synthetic repositories there.  Instead this
+ *  runs JMH in a new process whose working directory is a new temporary
+ *  directory, marked as one SyntheticRepo may wipe, and deletes that
+ *  directory afterwards.  Every benchmark fork inherits it.
+ *
+ *  Usage: java -jar benchmarks.jar [JMH OPTIONS], where JMH OPTIONS are
+ *  those of org.openjdk.jmh.Main (-h lists them).  Unless they say
+ *  otherwise with -rf and -rff, results are written as JSON to
+ *  bench-results.json in the current directory.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+public class Bench {
+
+    /** Default result file. */
+    static final String RESULTS = "bench-results.json";
+
+    /** Runs JMH with options ARGS in a scratch directory and exits with
+     *  its exit status. */
+    public static void main(String... args) throws IOException, InterruptedException {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.addAll(0, List.of("-rf", "json"));
+        }
+        if (!options.contains("-rff")) {
+            options.addAll(0, List.of("-rff", new File(RESULTS).getAbsolutePath()));
+        }
+        Path work = Files.createTempDirectory("gitlet-bench");
+        Files.createFile(work.resolve(SyntheticRepo.MARKER));
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("org.openjdk.jmh.Main");
+        command.addAll(options);
+        int status;
+        try {
+            status = new ProcessBuilder(command).directory(work.toFile())
+                .inheritIO().start().waitFor();
+        } finally {
+            delete(work);
+        }
+        System.exit(status);
+    }
+
+    /** Deletes DIR and everything under it. */
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> all = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) all.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
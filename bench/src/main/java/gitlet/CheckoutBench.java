@@ -0,0 +1,65 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of checking out one file of SIZE bytes, committed and then
+ *  left loose or packed by gc.  Run with -prof gc to see how much of the
+ *  content passes through the heap.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckoutBench {
+
+    /** Size of the file; packs hold files up to Pack.BIG_FILE_THRESHOLD. */
+    @Param({"1048576", "33554432"})
+    public int size;
+    /** "loose" or "packed". */
+    @Param({"loose", "packed"})
+    public String storage;
+
+    /** Builds the repository and commits the file. */
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        new SyntheticRepo(1, 64, 1, 0).create(Map.of());
+        Files.write(new File(NAME).toPath(), new SyntheticRepo(1, size, 1, 0).content(0, 0));
+        SyntheticRepo.run("add", NAME);
+        SyntheticRepo.run("commit", "big file");
+        if (storage.equals("packed")) {
+            SyntheticRepo.run("gc");
+        }
+        sha = Main.fromShaC(SyntheticRepo.head()).blob(NAME);
+    }
+
+    /** Checks out the file. */
+    @Benchmark
+    public void checkoutFile() {
+        ObjectStore.checkout(sha, new File("checkout.txt"));
+    }
+
+    /** Name of the file. */
+    private static final String NAME = "big.txt";
+    /** Blob id of the file. */
+    private String sha;
+}
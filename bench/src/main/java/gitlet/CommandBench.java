@@ -0,0 +1,183 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Gitlet's commands, each run in-process, as the daemon
+ *  runs them, on a SyntheticRepo of the shape given by the parameters.
+ *  Each benchmark runs in a fork of its own on a new repository; those
+ *  that change it (add, commit, merge, checkout) keep changing the same
+ *  one from invocation to invocation, so the repository grows a little
+ *  as they run.  Times are sampled, so results carry percentiles as well
+ *  as the mean.  THREADS sets core.threads, 0 leaving the default.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBench {
+
+    /** Shape of the repository; see SyntheticRepo. */
+    @Param("10000")
+    public int files;
+    @Param("1024")
+    public int fileSize;
+    @Param("200")
+    public int depth;
+    @Param("4")
+    public int branches;
+    /** Worker threads, or 0 for the default. */
+    @Param("0")
+    public int threads;
+
+    /** Builds the repository. */
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        repo = new SyntheticRepo(files, fileSize, depth, branches)
+            .create(threads == 0 ? Map.of() : Map.of(Config.THREADS, Integer.toString(threads)));
+        master = SyntheticRepo.head();
+        all = new TreeMap<>(Main.fromShaC(master).files());
+    }
+
+    /** A working file edited since it was last added. */
+    @State(Scope.Thread)
+    public static class Edited {
+        /** Edits the next file. */
+        @Setup(Level.Invocation)
+        public void edit(CommandBench bench) throws IOException {
+            path = bench.edit();
+        }
+
+        /** The file edited. */
+        String path;
+    }
+
+    /** A working file edited and staged. */
+    @State(Scope.Thread)
+    public static class Staged {
+        /** Edits and stages the next file. */
+        @Setup(Level.Invocation)
+        public void stage(CommandBench bench) throws IOException {
+            SyntheticRepo.run("add", bench.edit());
+        }
+    }
+
+    /** Master as the repository was built, before the last branch is
+     *  merged into it. */
+    @State(Scope.Thread)
+    public static class Unmerged {
+        /** Puts master back. */
+        @Setup(Level.Invocation)
+        public void reset(CommandBench bench) {
+            SyntheticRepo.run("reset", bench.master);
+        }
+    }
+
+    /** Stages one edited file. */
+    @Benchmark
+    public void add(Edited edited) {
+        SyntheticRepo.run("add", edited.path);
+    }
+
+    /** Stages the whole working directory, one file of which is
+     *  edited. */
+    @Benchmark
+    public void addAll(Edited edited) {
+        SyntheticRepo.run("add", ".");
+    }
+
+    /** Reports the status of the whole working directory. */
+    @Benchmark
+    public void status() {
+        SyntheticRepo.run("status");
+    }
+
+    /** Commits one staged file. */
+    @Benchmark
+    public void commit(Staged staged) {
+        edits += 1;
+        SyntheticRepo.run("commit", "bench commit " + edits);
+    }
+
+    /** Prints the history of master. */
+    @Benchmark
+    public void log() {
+        SyntheticRepo.run("log");
+    }
+
+    /** Prints every commit. */
+    @Benchmark
+    public void globalLog() {
+        SyntheticRepo.run("global-log");
+    }
+
+    /** Finds a commit by its message. */
+    @Benchmark
+    public void find() {
+        SyntheticRepo.run("find", "master commit 0");
+    }
+
+    /** Finds the split point of master and the first branch. */
+    @Benchmark
+    public String splitFinder() {
+        return Main.splitFinder(SyntheticRepo.branch(0));
+    }
+
+    /** Merges the last branch into master. */
+    @Benchmark
+    public void merge(Unmerged unmerged) {
+        SyntheticRepo.run("merge", SyntheticRepo.branch(branches - 1));
+    }
+
+    /** Switches between master and the first branch. */
+    @Benchmark
+    public void checkoutBranch() {
+        onBranch = !onBranch;
+        SyntheticRepo.run("checkout", onBranch ? SyntheticRepo.branch(0) : "master");
+    }
+
+    /** Writes every file of master, as a checkout into an empty
+     *  directory does. */
+    @Benchmark
+    public int checkoutAll() {
+        return WorkTree.checkout(all, Map.of());
+    }
+
+    /** Writes a new version of the next file on master and returns its
+     *  path. */
+    private String edit() throws IOException {
+        edits += 1;
+        int i = edits % files;
+        repo.edit(i, depth + edits);
+        return repo.path(i);
+    }
+
+    /** The repository. */
+    private SyntheticRepo repo;
+    /** The head of master once the repository is built. */
+    private String master;
+    /** Every file of master, with its blob id. */
+    private TreeMap<String, String> all;
+    /** Number of edits and commits made. */
+    private int edits;
+    /** True iff the first branch is checked out. */
+    private boolean onBranch;
+}
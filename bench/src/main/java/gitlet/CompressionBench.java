@@ -0,0 +1,97 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of the codecs of storage.compression on SIZE bytes of
+ *  text.  The compressed size is reported with compress, as the
+ *  secondary result "perMille", in thousandths of the original size.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBench {
+
+    /** Name of the codec. */
+    @Param({"none", "deflate", "lz"})
+    public String codec;
+    /** Size of the contents. */
+    @Param("1048576")
+    public int size;
+
+    /** Makes the contents and compresses them once. */
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        for (int id = 0; compression == null; id += 1) {
+            if (Compression.byId(id).name.equals(codec)) {
+                compression = Compression.byId(id);
+            }
+        }
+        content = new SyntheticRepo(1, size, 1, 0).content(0, 0);
+        compressed = compress();
+    }
+
+    /** The compressed size of the contents. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        /** Compressed size, in thousandths of the original. */
+        public long perMille;
+    }
+
+    /** Compresses the contents. */
+    @Benchmark
+    public byte[] compress(Size size) throws IOException {
+        byte[] result = compress();
+        size.perMille = 1000L * result.length / content.length;
+        return result;
+    }
+
+    /** Decompresses the contents. */
+    @Benchmark
+    public void decompress(Blackhole hole) throws IOException {
+        byte[] buf = new byte[ObjectStore.BUFFER_SIZE];
+        try (InputStream in = compression.decompress(new ByteArrayInputStream(compressed))) {
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                hole.consume(n);
+            }
+        }
+    }
+
+    /** Returns the contents compressed. */
+    private byte[] compress() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length);
+        try (OutputStream out = compression.compress(bytes)) {
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** The codec. */
+    private Compression compression;
+    /** The contents, and the contents compressed. */
+    private byte[] content, compressed;
+}
@@ -0,0 +1,60 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmark of fast-import: each iteration imports the history of a
+ *  SyntheticRepo of the shape given by the parameters into a new, empty
+ *  repository.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBench {
+
+    /** Shape of the history; see SyntheticRepo. */
+    @Param("10000")
+    public int files;
+    @Param("1024")
+    public int fileSize;
+    @Param("1000")
+    public int depth;
+    @Param("4")
+    public int branches;
+
+    /** Empties the repository and writes the history to import. */
+    @Setup(Level.Iteration)
+    public void create() throws IOException {
+        SyntheticRepo.wipe();
+        SyntheticRepo.run("init");
+        new SyntheticRepo(files, fileSize, depth, branches).writeHistory(STREAM);
+    }
+
+    /** Imports the history. */
+    @Benchmark
+    public void fastImport() throws IOException {
+        SyntheticRepo.fastImport(STREAM);
+    }
+
+    /** The history, deleted with the rest of the directory by the next
+     *  wipe. */
+    private static final File STREAM = new File(".bench-import");
+}
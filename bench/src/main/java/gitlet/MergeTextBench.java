@@ -0,0 +1,86 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the line-by-line merge of one file: a base of LINES
+ *  lines and two versions of it, each with EDITS scattered edits of a
+ *  few lines, some of which overlap and conflict.  The heap is kept to
+ *  256 MB, so that a merge that held whole files in memory would show.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class MergeTextBench {
+
+    /** Lines in the base. */
+    @Param({"10000", "100000", "1000000"})
+    public int lines;
+    /** Edits on each side. */
+    @Param("100")
+    public int edits;
+
+    /** Makes the three versions. */
+    @Setup(Level.Trial)
+    public void create() {
+        Random r = new Random(lines);
+        base = text(r, lines, -1, 0);
+        ours = text(r, lines, edits, 1);
+        theirs = text(r, lines, edits, 2);
+    }
+
+    /** Merges the two versions, discarding the result. */
+    @Benchmark
+    public boolean merge() throws IOException {
+        return Merge.merge(() -> new ByteArrayInputStream(base),
+            () -> new ByteArrayInputStream(ours),
+            () -> new ByteArrayInputStream(theirs), OutputStream.nullOutputStream());
+    }
+
+    /** Hashes the lines of the base. */
+    @Benchmark
+    public long[] hashLines() throws IOException {
+        return Merge.hashLines(() -> new ByteArrayInputStream(base));
+    }
+
+    /** Returns N lines, of which about EDITS runs of up to four, chosen
+     *  by R, are marked as changed on SIDE. */
+    private static byte[] text(Random r, int n, int edits, int side) {
+        StringBuilder text = new StringBuilder(n * 24);
+        for (int i = 0; i < n; i += 1) {
+            if (edits > 0 && r.nextInt(n) < edits) {
+                for (int k = r.nextInt(4); k >= 0 && i < n; k -= 1, i += 1) {
+                    text.append("changed on side ").append(side).append(' ').append(i).append('\n');
+                }
+            }
+            if (i < n) {
+                text.append("line ").append(i).append(" of the base\n");
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The three versions. */
+    private byte[] base, ours, theirs;
+}
@@ -0,0 +1,117 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the object layer: hashing file contents, encoding and
+ *  decoding commits and trees, and making and applying the deltas of
+ *  packs.  Contents are SIZE bytes; the commit and tree come from a small
+ *  SyntheticRepo, the tree being one directory of a hundred files.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectBench {
+
+    /** Size of the contents hashed and deltified. */
+    @Param("1048576")
+    public int size;
+
+    /** Builds the repository and the contents. */
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        new SyntheticRepo(1000, 64, 2, 0).create(Map.of());
+        commit = Main.fromShaC(SyntheticRepo.head());
+        commitBytes = Codec.encodeCommit(commit);
+        tree = Tree.load(Tree.load(commit.treeId()).dirs.firstEntry().getValue());
+        treeBytes = Codec.sealTree(Codec.encodeTree(tree));
+        SyntheticRepo big = new SyntheticRepo(1, size, 1, 0);
+        content = big.content(0, 0);
+        edited = big.content(0, 0);
+        for (int i = 0; i < edited.length; i += 4096) {
+            edited[i] = '#'; //one change in each 4 KB
+        }
+        delta = Delta.create(content, edited);
+        file = new File("content.txt");
+        Files.write(file.toPath(), content);
+    }
+
+    /** Hashes the contents in memory, as blobs made by fast-import
+     *  are. */
+    @Benchmark
+    public String sha1() {
+        return Utils.sha1(content, "content.txt");
+    }
+
+    /** Hashes the contents from a working file, as add does. */
+    @Benchmark
+    public String hashFile() {
+        return ObjectStore.hash(file, "content.txt");
+    }
+
+    /** Encodes a commit. */
+    @Benchmark
+    public byte[] encodeCommit() {
+        return Codec.encodeCommit(commit);
+    }
+
+    /** Decodes a commit. */
+    @Benchmark
+    public Commit decodeCommit() {
+        return Codec.decodeCommit(commitBytes);
+    }
+
+    /** Encodes a tree. */
+    @Benchmark
+    public byte[] encodeTree() {
+        return Codec.sealTree(Codec.encodeTree(tree));
+    }
+
+    /** Decodes a tree. */
+    @Benchmark
+    public Tree decodeTree() {
+        return Codec.decodeTree(treeBytes);
+    }
+
+    /** Makes the delta from the contents to an edited version. */
+    @Benchmark
+    public byte[] deltaCreate() {
+        return Delta.create(content, edited);
+    }
+
+    /** Applies that delta. */
+    @Benchmark
+    public byte[] deltaApply() {
+        return Delta.apply(content, delta);
+    }
+
+    /** A commit and a tree, and their encodings. */
+    private Commit commit;
+    private byte[] commitBytes;
+    private Tree tree;
+    private byte[] treeBytes;
+    /** The contents, an edited version, and the delta between them. */
+    private byte[] content, edited, delta;
+    /** A working file holding the contents. */
+    private File file;
+}
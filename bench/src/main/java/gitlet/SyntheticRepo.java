@@ -0,0 +1,206 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A synthetic repository for a benchmark, built in the current
+ *  directory, which must be one gitlet.Bench made for the purpose.
+ *
+ *  Its shape is given by four numbers.  The first commit on master adds
+ *  FILES files of FILESIZE bytes each, a hundred to a directory; each of
+ *  the DEPTH - 1 commits after it changes one file in a hundred.  Each of
+ *  BRANCHES branches, b0, b1, ..., forks from master at evenly spaced
+ *  points and has DEPTH / (BRANCHES + 1) commits of its own, or one if
+ *  that is none, each adding a file under a directory of the branch's
+ *  own, so that merging it is clean.  The history is written by
+ *  fast-import, and master is then checked out.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class SyntheticRepo {
+
+    /** The file marking a directory the benchmarks may wipe. */
+    static final String MARKER = ".gitlet-bench";
+    /** Files to a directory. */
+    static final int DIR_SIZE = 100;
+    /** Time of the first commit, in seconds since the epoch. */
+    private static final long EPOCH = 1_600_000_000L;
+
+    /** A repository of the given shape; see the class comment. */
+    SyntheticRepo(int files, int fileSize, int depth, int branches) {
+        if (files < 1 || fileSize < 0 || depth < 1 || branches < 0) {
+            throw new IllegalArgumentException("bad repository shape");
+        }
+        this.files = files;
+        this.fileSize = fileSize;
+        this.depth = depth;
+        this.branches = branches;
+    }
+
+    /** Replaces whatever is in the current directory with this
+     *  repository, with the settings CONFIG.  Returns this. */
+    SyntheticRepo create(Map<String, String> config) throws IOException {
+        wipe();
+        run("init");
+        for (Map.Entry<String, String> e : config.entrySet()) {
+            run("config", e.getKey(), e.getValue());
+        }
+        File stream = new File(".bench-import");
+        writeHistory(stream);
+        try {
+            fastImport(stream);
+        } finally {
+            stream.delete();
+        }
+        Commit head = Main.fromShaC(Journal.readString(Main.HEAD));
+        WorkTree.checkout(new TreeMap<>(head.files()), Map.of());
+        Index.save();
+        return this;
+    }
+
+    /** Deletes everything in the current directory but the marker, and
+     *  forgets what was loaded from the repository that was there. */
+    static void wipe() throws IOException {
+        if (!new File(MARKER).exists()) {
+            throw new IllegalStateException("Run the benchmarks through gitlet.Bench, "
+                + "which gives them a scratch directory.");
+        }
+        for (File f : new File(".").listFiles()) {
+            if (!f.getName().equals(MARKER)) {
+                Bench.delete(f.toPath());
+            }
+        }
+        CommitGraph.reset();
+        Config.reset();
+        Index.reset();
+        Pack.reset();
+    }
+
+    /** Runs the Gitlet command ARGS in-process, as the daemon does,
+     *  discarding what it prints. */
+    static void run(String... args) {
+        PrintStream out = System.out;
+        System.setOut(NOWHERE);
+        try {
+            Main.execute(args);
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /** Runs fast-import on the history in file STREAM. */
+    static void fastImport(File stream) throws IOException {
+        InputStream in = System.in;
+        try (InputStream history = new FileInputStream(stream)) {
+            System.setIn(history);
+            run("fast-import");
+        } finally {
+            System.setIn(in);
+        }
+    }
+
+    /** Writes this repository's history to file STREAM as input for
+     *  fast-import. */
+    void writeHistory(File stream) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(stream), 1 << 16)) {
+            writeHistory(out);
+        }
+    }
+
+    /** Writes this repository's history to OUT as input for
+     *  fast-import. */
+    private void writeHistory(OutputStream out) throws IOException {
+        int perBranch = depth / (branches + 1);
+        int changed = Math.max(1, files / DIR_SIZE);
+        int next = 0;
+        for (int c = 0, b = 0; c < depth; c += 1) {
+            commit(out, "master", c);
+            if (c == 0) {
+                for (int i = 0; i < files; i += 1) {
+                    file(out, path(i), content(i, 0));
+                }
+            }
+            for (int k = 0; k < changed && c > 0; k += 1) {
+                int i = (c * changed + k) % files;
+                file(out, path(i), content(i, c));
+            }
+            //branch b forks from master commit depth * (b + 1) / (branches + 1), or the last
+            for (; b < branches && Math.min(depth - 1, depth * (b + 1) / (branches + 1)) == c;
+                 b += 1) {
+                for (int k = 0; k < Math.max(1, perBranch); k += 1) {
+                    commit(out, branch(b), depth + next);
+                    next += 1;
+                    file(out, branch(b) + "/f" + k + ".txt", content(k, depth + next));
+                }
+            }
+        }
+    }
+
+    /** Writes to OUT the header of commit number N on BRANCH. */
+    private static void commit(OutputStream out, String branch, int n) throws IOException {
+        byte[] message = (branch + " commit " + n).getBytes(StandardCharsets.UTF_8);
+        out.write(("commit " + branch + "\ndate " + (EPOCH + n) + "\ndata "
+            + message.length + "\n").getBytes(StandardCharsets.UTF_8));
+        out.write(message);
+        out.write('\n');
+    }
+
+    /** Writes to OUT a change setting file PATH to CONTENT. */
+    private static void file(OutputStream out, String path, byte[] content) throws IOException {
+        out.write(("M " + path + "\ndata " + content.length + "\n")
+            .getBytes(StandardCharsets.UTF_8));
+        out.write(content);
+        out.write('\n');
+    }
+
+    /** Returns the path of file I. */
+    String path(int i) {
+        return String.format("d%03d/f%05d.txt", i / DIR_SIZE, i);
+    }
+
+    /** Returns the name of branch B. */
+    static String branch(int b) {
+        return "b" + b;
+    }
+
+    /** Returns version VERSION of the contents of file I: FILESIZE bytes
+     *  of numbered lines, different for every file and version. */
+    byte[] content(int i, int version) {
+        StringBuilder text = new StringBuilder(fileSize + 64);
+        for (int line = 0; text.length() < fileSize; line += 1) {
+            text.append("line ").append(line).append(" of file ").append(i)
+                .append(", version ").append(version).append('\n');
+        }
+        text.setLength(fileSize);
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Writes version VERSION of file I to the working directory. */
+    void edit(int i, int version) throws IOException {
+        Files.write(new File(path(i)).toPath(), content(i, version));
+    }
+
+    /** Returns the id of the current head commit. */
+    static String head() {
+        return Journal.readString(Main.HEAD);
+    }
+
+    /** Shape of the repository. */
+    final int files, fileSize, depth, branches;
+
+    /** Where printed output goes. */
+    private static final PrintStream NOWHERE =
+        new PrintStream(OutputStream.nullOutputStream());
+}
@@ -6,25 +6,34 @@ import java.io.Serializable;
 
 public class Blob implements Serializable {
 
+    //matches blobs serialized into .blobs by earlier versions
+    private static final long serialVersionUID = 3566551216288672024L;
+
     public File cwdfile;
     public String fileName;
     public String shaName;
-    public byte[] content;
+    public byte[] content; //only loaded for blobs read back from .gitlet
 
     public Blob(String name) {
         fileName = name;
         cwdfile = new File(fileName); //should lead to the file in cwd?
         if (cwdfile.exists()) {
-            content = Utils.readContents(cwdfile); //Return the entire contents of FILE as a byte array
-            shaName = Utils.sha1(content, fileName);
+            shaName = Index.get().hash(fileName); //rehashes only if the file's stat changed
         }
     }
 
-    public void saveBlob() throws IOException {
-        File f = Utils.join(Main.BLOBS_FOLDER, this.shaName);
-        f.createNewFile();
-        Utils.writeObject(f, this);
+    //constructor for a blob read back out of .gitlet
+    public Blob(String name, byte[] contents) {
+        fileName = name;
+        cwdfile = new File(fileName);
+        content = contents;
+        shaName = Utils.sha1(content, fileName);
+    }
+
+    //copies the working file into dir under its shaName
+    public void saveBlob(File dir) throws IOException {
+        ObjectStore.writeBlob(cwdfile, fileName, Utils.join(dir, this.shaName));
     }
 
 
-}
\ No newline at end of file
+}
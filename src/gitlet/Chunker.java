@@ -0,0 +1,51 @@
+package gitlet;
+
+import java.util.Random;
+
+/** Content-defined chunking of file contents with a gear rolling hash.
+ *  A chunk ends wherever the hash of the last few dozen bytes has
+ *  CHUNK_BITS low zero bits, so an edit only moves the chunk boundaries
+ *  next to it and every other chunk of the file keeps its old id.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Chunker {
+
+    /** Smallest and largest chunk lengths. */
+    static final int MIN_CHUNK = 2 << 10, MAX_CHUNK = 64 << 10;
+    /** Chunks average about 2^CHUNK_BITS bytes past MIN_CHUNK. */
+    private static final int CHUNK_BITS = 13;
+    /** A boundary is a position where HASH & MASK is zero. */
+    private static final long MASK = ((1L << CHUNK_BITS) - 1) << (64 - CHUNK_BITS);
+    /** Random value mixed into the hash for each byte value.  The seed is
+     *  fixed, since boundaries must not change between runs. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random r = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = r.nextLong();
+        }
+    }
+
+    /** Returns the length of the chunk starting at DATA[OFF], where LEN
+     *  bytes are available and END is true iff they run to the end of the
+     *  content.  Returns -1 if no boundary is found in a LEN shorter than
+     *  MAX_CHUNK and more content is to come. */
+    static int cut(byte[] data, int off, int len, boolean end) {
+        if (len <= MIN_CHUNK) {
+            return end ? len : -1;
+        }
+        int limit = Math.min(len, MAX_CHUNK);
+        long hash = 0;
+        for (int i = MIN_CHUNK; i < limit; i += 1) {
+            hash = (hash << 1) + GEAR[data[off + i] & 0xff];
+            if ((hash & MASK) == 0) {
+                return i + 1;
+            }
+        }
+        if (limit == MAX_CHUNK || end) {
+            return limit;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,218 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** The binary encoding of commits and their file trees in .gitlet.
+ *  Every encoded object starts with a magic number and a format version,
+ *  so that a reader can tell the formats apart and older Gitlet files,
+ *  which hold serialized Java objects, are still recognized.
+ *
+ *  A commit is its id, parent, second parent, timestamp, message and
+ *  branch, then the id of its Tree.  Versions 1 and 2 instead end with the
+ *  commit's whole file map: an entry count and then, sorted by file name,
+ *  each name followed by the 20 bytes of its blob id.  From version 2 on
+ *  the fields follow a byte naming the Compression they are compressed
+ *  with; version 1 is uncompressed.
+ *
+ *  A stored tree is TREE_MAGIC, a version and a compression byte, then
+ *  its body: its files as a count and name/blob id pairs, then its
+ *  subdirectories as a count and name/tree id pairs.  A tree's id is the
+ *  SHA-1 of its uncompressed body.
+ *  Strings are a length and UTF-8 bytes; a length of -1 stands for null.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Codec {
+
+    /** Magic number of an encoded commit. */
+    static final int COMMIT_MAGIC = 0x47434d54;
+    /** Current version of the commit format. */
+    static final int COMMIT_VERSION = 3;
+    /** Magic number of a stored tree. */
+    static final int TREE_MAGIC = 0x47545245;
+    /** Current version of the tree format. */
+    static final int TREE_VERSION = 1;
+    /** First two bytes of a Java-serialized object. */
+    private static final int SERIAL_MAGIC = 0xaced;
+
+    /** Returns the encoding of commit C. */
+    static byte[] encodeCommit(Commit c) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Compression codec = Compression.configured();
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(COMMIT_MAGIC);
+            header.writeByte(COMMIT_VERSION);
+            header.writeByte(codec.id);
+            DataOutputStream out = new DataOutputStream(codec.compress(bytes));
+            writeString(out, c.shaName);
+            writeString(out, c.parent);
+            writeString(out, c.parent2);
+            writeString(out, c.timestamp);
+            writeString(out, c.message);
+            writeString(out, c.branch);
+            out.write(Pack.toBytes(c.treeId()));
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error serializing commit.");
+        }
+    }
+
+    /** Returns the commit stored in F, in either the encoded or the older
+     *  serialized format. */
+    static Commit readCommit(File f) {
+        byte[] data = Utils.readContents(f);
+        if (isSerialized(data)) {
+            return Utils.readObject(f, Commit.class);
+        }
+        return decodeCommit(data);
+    }
+
+    /** Returns the commit encoded in DATA. */
+    static Commit decodeCommit(byte[] data) {
+        long start = Trace.start();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != COMMIT_MAGIC) {
+                throw Utils.error("Corrupt commit.");
+            }
+            int version = in.readByte();
+            if (version == 2 || version == 3) {
+                in = new DataInputStream(Compression.byId(in.readByte()).decompress(in));
+            } else if (version != 1) {
+                throw Utils.error("Unknown commit format %d.", version);
+            }
+            Commit c = new Commit(readString(in));
+            c.parent = readString(in);
+            c.parent2 = readString(in);
+            c.timestamp = readString(in);
+            c.message = readString(in);
+            c.branch = readString(in);
+            if (version == 3) {
+                byte[] tree = new byte[Utils.UID_LENGTH / 2];
+                in.readFully(tree);
+                c.tree = Pack.toHex(tree, 0);
+            } else {
+                readTree(in, c.blobs);
+            }
+            Trace.DECODE.add(start, data.length);
+            return c;
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt commit.");
+        }
+    }
+
+    /** Returns the body of tree T. */
+    static byte[] encodeTree(Tree t) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeTree(out, t.files);
+            writeTree(out, t.dirs);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error serializing tree.");
+        }
+    }
+
+    /** Returns the stored form of the tree whose body is BODY. */
+    static byte[] sealTree(byte[] body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Compression codec = Compression.configured();
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(TREE_MAGIC);
+            header.writeByte(TREE_VERSION);
+            header.writeByte(codec.id);
+            try (OutputStream out = codec.compress(bytes)) {
+                out.write(body);
+            }
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error serializing tree.");
+        }
+    }
+
+    /** Returns the tree whose stored form is DATA. */
+    static Tree decodeTree(byte[] data) {
+        long start = Trace.start();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != TREE_MAGIC || in.readByte() != TREE_VERSION) {
+                throw Utils.error("Corrupt tree.");
+            }
+            in = new DataInputStream(Compression.byId(in.readByte()).decompress(in));
+            Tree t = new Tree();
+            readTree(in, t.files);
+            readTree(in, t.dirs);
+            Trace.DECODE.add(start, data.length);
+            return t;
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt tree.");
+        }
+    }
+
+    /** Returns true iff DATA holds a Java-serialized object. */
+    static boolean isSerialized(byte[] data) {
+        return data.length >= 2
+                && ((data[0] & 0xff) << 8 | (data[1] & 0xff)) == SERIAL_MAGIC;
+    }
+
+    /** Writes the map TREE from names to ids to OUT. */
+    static void writeTree(DataOutputStream out, Map<String, String> tree)
+        throws IOException {
+        List<String> names = new ArrayList<>(tree.keySet());
+        Collections.sort(names);
+        out.writeInt(names.size());
+        for (String name : names) {
+            writeString(out, name);
+            out.write(Pack.toBytes(tree.get(name)));
+        }
+    }
+
+    /** Reads a map from names to ids from IN into TREE. */
+    static void readTree(DataInputStream in, Map<String, String> tree)
+        throws IOException {
+        byte[] id = new byte[Utils.UID_LENGTH / 2];
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String name = readString(in);
+            in.readFully(id);
+            tree.put(name, Pack.toHex(id, 0));
+        }
+    }
+
+    /** Writes S, which may be null, to OUT. */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** Reads a string, which may be null, from IN. */
+    static String readString(DataInput in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -6,22 +6,28 @@ import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
 
 public class Commit implements Serializable {
 
+    //matches commits serialized into .commits by earlier versions
+    private static final long serialVersionUID = 6289976618461981658L;
+
     public String parent;
     public String parent2;
     public String shaName;
     public String timestamp;
     public String message;
     public String branch;
-    public File file;
-    public HashMap<String, String> blobs = new HashMap<>(); //key fileName, value sha1
+    public String tree; //id of the root Tree of this commit's files
+    public HashMap<String, String> blobs = new HashMap<>(); //only for commits stored before trees
+    private transient Map<String, String> files; //all files, once flattened
 
 
 
-    private String makeTimestamp() {
-        Date d = new Date();
+    //the timestamp of a commit made at d, which with its message gives its shaName
+    static String makeTimestamp(Date d) {
         SimpleDateFormat t = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
         return t.format(d);
     }
@@ -35,25 +41,72 @@ public class Commit implements Serializable {
         SimpleDateFormat t = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
         timestamp = t.format(d);
         shaName = Utils.sha1(message, timestamp);
-        file = Utils.join(Main.COMMITS_FOLDER, shaName);
     }
 
     //constructor for owo-ing
     public Commit(String msg, String p, String br) {
+        this(msg, p, br, new Date());
+    }
+
+    //constructor for a commit made at a given time, as by fast-import
+    Commit(String msg, String p, String br, Date when) {
         message = msg;
         parent = p; //shaName of parent
         branch = br;
-        timestamp = makeTimestamp();
+        timestamp = makeTimestamp(when);
         shaName = Utils.sha1(message, timestamp);
-        file = Utils.join(Main.COMMITS_FOLDER, shaName);
         Commit parent = Main.fromShaC(p); //reconstructing parent commit
-        this.blobs.putAll(parent.blobs); //current blobs = previous blobs
-        //inherits blobs from parent commit
+        this.tree = parent.treeId(); //shares the parent's tree until files change
+    }
+
+    //constructor for a commit being decoded, see Codec
+    Commit(String sha) {
+        shaName = sha;
+    }
+
+    //returns the id of this commit's tree, storing trees for older commits
+    public String treeId() {
+        if (tree == null) {
+            tree = Tree.build(blobs);
+        }
+        return tree;
+    }
+
+    //returns the blob sha of fileName in this commit, or null if untracked
+    public String blob(String fileName) {
+        if (tree == null) {
+            return blobs.get(fileName);
+        }
+        if (files != null) {
+            return files.get(fileName);
+        }
+        return Tree.lookup(tree, fileName);
+    }
+
+    //returns every file of this commit mapped to its blob sha
+    public Map<String, String> files() {
+        if (files == null) {
+            files = tree == null ? blobs : Tree.flatten(tree);
+            ObjectCache.COMMITS.reweigh(shaName, this); //now holds every path
+        }
+        return files;
+    }
+
+    //true if files() has built a map of its own
+    boolean isFlattened() {
+        return files != null && files != blobs;
+    }
+
+    //applies changes (fileName to blob sha, or to null for removal) to this commit's tree
+    public void update(SortedMap<String, String> changes) {
+        tree = Tree.commit(treeId(), changes);
+        files = null;
     }
 
     public void saveCommit() throws IOException {
-        this.file.createNewFile();
-        Utils.writeObject(file, this);
+        File f = Utils.join(Main.COMMITS_FOLDER, shaName);
+        Utils.writeContents(f, Codec.encodeCommit(this));
+        Journal.wrote(f); //forced to disk before any ref points at it
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,345 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/** The shape of the history, kept in .gitlet/.commitgraph so that walking
+ *  it never has to read whole commits.  Commits are numbered in the order
+ *  they were added, which puts every commit after its parents, and for
+ *  each the graph holds its id, the numbers of its parents, its generation
+ *  (one more than that of its highest parent; the initial commit is 1), its
+ *  time and the id of its file tree.
+ *
+ *  The file is MAGIC and then one RECORD-byte record per commit, and is
+ *  only ever appended to.  Commits missing from it, such as those written
+ *  before it existed, are added the first time they are looked up.
+ *
+ *  Only a command holding the RepoLock writes the file.  Since parents are
+ *  given by record number, a record appended by a reader racing a writer
+ *  would give the writer's next records the wrong parents, so a reader
+ *  adds missing commits to its graph in memory only, and ignores a record
+ *  cut short at the end of the file, which may be one a writer has not
+ *  finished; the next writer cuts off such a record if it is left by a
+ *  crash.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class CommitGraph {
+
+    /** Magic number at the start of the file. */
+    private static final int MAGIC = 0x47434731;
+    /** Length of a SHA-1 id in bytes. */
+    private static final int ID_BYTES = Utils.UID_LENGTH / 2;
+    /** Length of one record: id, two parents, generation, time, tree. */
+    private static final int RECORD = ID_BYTES + 4 + 4 + 4 + 8 + ID_BYTES;
+    /** Stands for a missing parent. */
+    static final int NONE = -1;
+    /** Marks used by mergeBase. */
+    private static final int FROM_A = 1, FROM_B = 2, BOTH = 3, STALE = 4;
+
+    /** The graph of this repository, loaded on first use. */
+    private static CommitGraph graph;
+
+    /** Number of commits in the graph. */
+    private int size;
+    /** Per-commit columns, indexed by commit number. */
+    private String[] ids = new String[16];
+    private int[] parents = new int[16], parents2 = new int[16];
+    private int[] generations = new int[16];
+    private long[] times = new long[16];
+    private String[] trees = new String[16];
+    /** Length of the graph file as this graph last read or wrote it. */
+    private long length;
+    /** True iff this graph holds commits the file does not. */
+    private boolean unsaved;
+    /** Maps commit ids to commit numbers. */
+    private final HashMap<String, Integer> numbers = new HashMap<>();
+
+    /** Returns the commit graph of this repository, reading it from disk
+     *  or building it from .gitlet/.commits if need be. */
+    static CommitGraph get() {
+        boolean writer = RepoLock.isHeld();
+        if (graph != null && (graph.length != Main.COMMIT_GRAPH.length()
+                || (graph.unsaved && writer))) {
+            graph = null; //another process has added commits since it was read, or
+                          //this one has added some the file does not have
+        }
+        if (graph == null) {
+            graph = new CommitGraph();
+            if (Main.COMMIT_GRAPH.exists()) {
+                byte[] data = Utils.readContents(Main.COMMIT_GRAPH);
+                graph.read(data);
+                graph.length = data.length;
+                if (writer && data.length != 4 + (long) graph.size * RECORD) {
+                    graph.length = 4 + (long) graph.size * RECORD;
+                    truncate(graph.length);
+                }
+            } else {
+                if (writer) {
+                    Utils.writeContents(Main.COMMIT_GRAPH, header());
+                }
+                graph.length = Main.COMMIT_GRAPH.length();
+                for (String sha : Utils.plainFilenamesIn(Main.COMMITS_FOLDER)) {
+                    graph.indexOf(sha);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /** Forgets the loaded graph, so the next get() reads it again. */
+    static void reset() {
+        graph = null;
+    }
+
+    /** Returns the number of commit SHA, adding it (and any of its
+     *  ancestors that are missing) to the graph if need be.  Returns NONE
+     *  if SHA is null. */
+    int indexOf(String sha) {
+        if (sha == null) {
+            return NONE;
+        }
+        Integer n = numbers.get(sha);
+        if (n != null) {
+            return n;
+        }
+        ArrayList<String> work = new ArrayList<>();
+        work.add(sha);
+        while (!work.isEmpty()) {
+            String s = work.remove(work.size() - 1);
+            if (s == null || numbers.containsKey(s)) {
+                continue;
+            }
+            Commit c = Main.fromShaC(s);
+            boolean ready = (c.parent == null || numbers.containsKey(c.parent))
+                    && (c.parent2 == null || numbers.containsKey(c.parent2));
+            if (ready) {
+                add(c);
+            } else {
+                work.add(s);
+                work.add(c.parent);
+                work.add(c.parent2);
+            }
+        }
+        return numbers.get(sha);
+    }
+
+    /** Adds commit C, whose parents are already in the graph, and appends
+     *  it to the graph file if this command holds the RepoLock.  Does
+     *  nothing if C is already present. */
+    void add(Commit c) {
+        if (numbers.containsKey(c.shaName)) {
+            return;
+        }
+        int p1 = indexOf(c.parent);
+        int p2 = indexOf(c.parent2);
+        int gen = 1 + Math.max(p1 == NONE ? 0 : generations[p1],
+                p2 == NONE ? 0 : generations[p2]);
+        append(c.shaName, p1, p2, gen, timeOf(c), c.treeId());
+        if (unsaved || !RepoLock.isHeld()) {
+            unsaved = true; //kept in memory until a writer loads the graph again
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(Main.COMMIT_GRAPH, true)))) {
+            writeRecord(out, size - 1);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        length += RECORD;
+        Journal.wrote(Main.COMMIT_GRAPH);
+    }
+
+    /** Returns the number of commits in the graph. */
+    int size() {
+        return size;
+    }
+
+    /** Returns the id of commit number N. */
+    String id(int n) {
+        return ids[n];
+    }
+
+    /** Returns the number of the first parent of commit N, or NONE. */
+    int parent(int n) {
+        return parents[n];
+    }
+
+    /** Returns the number of the second parent of commit N, or NONE. */
+    int parent2(int n) {
+        return parents2[n];
+    }
+
+    /** Returns the generation of commit N. */
+    int generation(int n) {
+        return generations[n];
+    }
+
+    /** Returns the time of commit N in milliseconds since the epoch. */
+    long time(int n) {
+        return times[n];
+    }
+
+    /** Returns the id of the file tree of commit N. */
+    String tree(int n) {
+        return trees[n];
+    }
+
+    /** Returns the id of the first parent of commit SHA, or null. */
+    String parentOf(String sha) {
+        int p = parents[indexOf(sha)];
+        return p == NONE ? null : ids[p];
+    }
+
+    /** Returns the time of commit C in milliseconds since the epoch. */
+    static long timeOf(Commit c) {
+        try {
+            return new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z")
+                    .parse(c.timestamp).getTime();
+        } catch (ParseException excp) {
+            return 0;
+        }
+    }
+
+    /** Adds a record for commit ID with parents P1 and P2, generation GEN,
+     *  time TIME and tree TREE to the in-memory graph only. */
+    void append(String id, int p1, int p2, int gen, long time,
+                        String tree) {
+        if (size == ids.length) {
+            int cap = 2 * size;
+            ids = Arrays.copyOf(ids, cap);
+            parents = Arrays.copyOf(parents, cap);
+            parents2 = Arrays.copyOf(parents2, cap);
+            generations = Arrays.copyOf(generations, cap);
+            times = Arrays.copyOf(times, cap);
+            trees = Arrays.copyOf(trees, cap);
+        }
+        ids[size] = id;
+        parents[size] = p1;
+        parents2[size] = p2;
+        generations[size] = gen;
+        times[size] = time;
+        trees[size] = tree;
+        numbers.put(id, size);
+        size += 1;
+    }
+
+    /** Loads the records in DATA, the contents of the graph file. */
+    private void read(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("Corrupt commit graph.");
+            }
+            byte[] id = new byte[ID_BYTES];
+            byte[] tree = new byte[ID_BYTES];
+            //a record cut short by a crash is ignored and added again later
+            for (int n = (data.length - 4) / RECORD; n > 0; n -= 1) {
+                in.readFully(id);
+                int p1 = in.readInt();
+                int p2 = in.readInt();
+                int gen = in.readInt();
+                long time = in.readLong();
+                in.readFully(tree);
+                append(Pack.toHex(id, 0), p1, p2, gen, time, Pack.toHex(tree, 0));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt commit graph.");
+        }
+    }
+
+    /** Writes the record of commit N to OUT. */
+    private void writeRecord(DataOutputStream out, int n) throws IOException {
+        out.write(Pack.toBytes(ids[n]));
+        out.writeInt(parents[n]);
+        out.writeInt(parents2[n]);
+        out.writeInt(generations[n]);
+        out.writeLong(times[n]);
+        out.write(Pack.toBytes(trees[n]));
+    }
+
+    /** Cuts the graph file down to its first LEN bytes. */
+    private static void truncate(long len) {
+        try (RandomAccessFile f = new RandomAccessFile(Main.COMMIT_GRAPH, "rw")) {
+            f.setLength(len);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the header of an empty graph file. */
+    private static byte[] header() {
+        return new byte[] {(byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16),
+            (byte) (MAGIC >>> 8), (byte) MAGIC};
+    }
+
+    /** Returns the number of the best common ancestor of commits A and
+     *  B, or NONE if they have none.  A common ancestor is best if it is
+     *  not an ancestor of another common ancestor; if several are, the one
+     *  of highest generation is returned.
+     *
+     *  Commits are visited from both ends at once, highest generation
+     *  first, each carrying marks saying which of A and B reach it.  A
+     *  commit reached from both is a common ancestor, and everything below
+     *  it is marked stale; a commit's ancestors all have lower generations,
+     *  so it is always visited after every commit that can reach it.  The
+     *  walk stops once only stale commits are left to visit. */
+    int mergeBase(int a, int b) {
+        if (a == b) {
+            return a;
+        }
+        HashMap<Integer, Integer> marks = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>((x, y) ->
+                generations[x] != generations[y]
+                        ? Integer.compare(generations[y], generations[x])
+                        : Integer.compare(y, x));
+        marks.put(a, FROM_A);
+        marks.put(b, FROM_B);
+        queue.add(a);
+        queue.add(b);
+        int live = 2;
+        int best = NONE;
+        while (live > 0) {
+            int n = queue.remove();
+            int m = marks.get(n);
+            if ((m & STALE) == 0) {
+                live -= 1;
+            }
+            if ((m & BOTH) == BOTH) {
+                if ((m & STALE) == 0 && best == NONE) {
+                    best = n;
+                }
+                m |= STALE;
+            }
+            for (int p : new int[] {parents[n], parents2[n]}) {
+                if (p == NONE) {
+                    continue;
+                }
+                int old = marks.getOrDefault(p, 0);
+                if ((old | m) == old) {
+                    continue;
+                }
+                if (old == 0) {
+                    queue.add(p);
+                    if ((m & STALE) == 0) {
+                        live += 1;
+                    }
+                } else if ((old & STALE) == 0 && (m & STALE) != 0) {
+                    live -= 1;
+                }
+                marks.put(p, old | m);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,247 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/** The ids of all commits in sorted order, so that an abbreviated id can
+ *  be resolved with a binary search.  The ids are kept in two tables,
+ *  like the index of a pack: .gitlet/.commitids holds most of them and
+ *  .gitlet/.commitids.new the few most recent.  Each commit adds its id
+ *  to the small table, and once that holds more than DELTA_MAX ids the
+ *  two are merged into a new large one, so that a commit seldom rewrites
+ *  more than a few kilobytes.
+ *
+ *  A table covers a stretch of the CommitLog: it is MAGIC, the offsets in
+ *  the log at which the stretch starts and ends, a 256-entry fan-out
+ *  table over the first byte of the ids, and then the sorted ids of the
+ *  commits in the stretch, 20 bytes each.  The large table starts at the
+ *  start of the log, and the small one counts only if it starts where
+ *  the large one ends.  Like the message index, the tables may trail the
+ *  log; lookups scan whatever follows them.  Tables are replaced whole,
+ *  by a rename, and are mapped into memory to be searched.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class CommitIds {
+
+    /** Magic number at the start of a table. */
+    private static final int MAGIC = 0x47434944;
+    /** Length of a SHA-1 id in bytes. */
+    private static final int ID_BYTES = Utils.UID_LENGTH / 2;
+    /** Length of the header of a table, and offset of its first id. */
+    private static final int HEADER = 4 + 8 + 8 + 4 * 256;
+    /** Most ids the small table holds before it is merged. */
+    static final int DELTA_MAX = 4096;
+
+    /** The large and small tables. */
+    private static final File BASE = Utils.join(Main.GITLET_FOLDER, ".commitids");
+    private static final File DELTA = Utils.join(Main.GITLET_FOLDER, ".commitids.new");
+
+    /** Returns the full id of the commit whose id starts with PREFIX, or
+     *  null if there is none.  It is an error if several do. */
+    static String resolve(String prefix) {
+        String p = prefix.toLowerCase();
+        if (p.isEmpty() || p.length() > Utils.UID_LENGTH || !p.matches("[0-9a-f]+")) {
+            return null;
+        }
+        LinkedHashSet<String> found = new LinkedHashSet<>();
+        Table base = Table.read(BASE);
+        Table delta = Table.read(DELTA);
+        long end = 4;
+        if (base != null) {
+            base.find(p, found);
+            end = base.end;
+        }
+        if (delta != null && delta.start == end) {
+            delta.find(p, found);
+            end = delta.end;
+        }
+        CommitLog.scan(end, e -> {
+            if (e.sha.startsWith(p)) {
+                found.add(e.sha);
+            }
+        });
+        if (found.size() > 1) {
+            throw Utils.error("Commit id %s is ambiguous.", prefix);
+        }
+        return found.isEmpty() ? null : found.iterator().next();
+    }
+
+    /** Adds to the tables the ids of the commits of the log they do not
+     *  yet cover.  Only a command holding the repository lock may call
+     *  this. */
+    static void catchUp() {
+        Table base = Table.read(BASE);
+        Table delta = Table.read(DELTA);
+        long start = base == null ? 4 : base.end;
+        if (delta == null || delta.start != start) {
+            delta = null;
+        }
+        long[] end = {delta == null ? start : delta.end};
+        List<byte[]> added = new ArrayList<>();
+        CommitLog.scan(end[0], e -> {
+            added.add(Pack.toBytes(e.sha));
+            end[0] = e.end;
+        });
+        if (added.isEmpty()) {
+            return;
+        }
+        byte[] ids = merge(delta == null ? new byte[0] : delta.ids(), sort(added));
+        if (ids.length / ID_BYTES <= DELTA_MAX) {
+            write(DELTA, start, end[0], ids);
+        } else {
+            write(BASE, 4, end[0], merge(base == null ? new byte[0] : base.ids(), ids));
+            DELTA.delete();
+        }
+    }
+
+    /** Returns the ids IDS, sorted and joined into one array. */
+    private static byte[] sort(List<byte[]> ids) {
+        ids.sort(Arrays::compareUnsigned);
+        byte[] result = new byte[ids.size() * ID_BYTES];
+        for (int i = 0; i < ids.size(); i += 1) {
+            System.arraycopy(ids.get(i), 0, result, i * ID_BYTES, ID_BYTES);
+        }
+        return result;
+    }
+
+    /** Returns the sorted ids of A and B, each sorted, with duplicates
+     *  left out. */
+    private static byte[] merge(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            int cmp = i == a.length ? 1 : j == b.length ? -1
+                    : Arrays.compareUnsigned(a, i, i + ID_BYTES, b, j, j + ID_BYTES);
+            if (cmp <= 0) {
+                System.arraycopy(a, i, result, k, ID_BYTES);
+                i += ID_BYTES;
+                j += cmp == 0 ? ID_BYTES : 0;
+            } else {
+                System.arraycopy(b, j, result, k, ID_BYTES);
+                j += ID_BYTES;
+            }
+            k += ID_BYTES;
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /** Replaces the table F with one covering the log from offset START
+     *  to END and holding IDS, which are sorted. */
+    private static void write(File f, long start, long end, byte[] ids) {
+        int[] fanout = new int[256];
+        for (int i = 0; i < ids.length; i += ID_BYTES) {
+            fanout[ids[i] & 0xff] += 1;
+        }
+        for (int b = 1; b < 256; b += 1) {
+            fanout[b] += fanout[b - 1];
+        }
+        File tmp;
+        try {
+            tmp = File.createTempFile(".commitids", ".tmp", Main.GITLET_FOLDER);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(start);
+            out.writeLong(end);
+            for (int n : fanout) {
+                out.writeInt(n);
+            }
+            out.write(ids);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ObjectStore.move(tmp, f);
+    }
+
+    /** One table, mapped into memory. */
+    private static class Table {
+        /** Returns the table in F, or null if there is none or it is not
+         *  whole. */
+        static Table read(File f) {
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (size < HEADER || (size - HEADER) % ID_BYTES != 0) {
+                    return null;
+                }
+                Table t = new Table(ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                return t.buf.getInt(0) == MAGIC
+                        && t.buf.getInt(HEADER - 4) == (size - HEADER) / ID_BYTES ? t : null;
+            } catch (IOException excp) {
+                return null;
+            }
+        }
+
+        /** A table held in BUF. */
+        private Table(MappedByteBuffer buf) {
+            this.buf = buf;
+            start = buf.getLong(4);
+            end = buf.getLong(12);
+        }
+
+        /** Adds to FOUND the ids starting with PREFIX, a lower-case
+         *  hexadecimal numeral, stopping once FOUND holds two. */
+        void find(String prefix, LinkedHashSet<String> found) {
+            byte[] lo = Pack.toBytes((prefix + "0".repeat(Utils.UID_LENGTH)).substring(0,
+                    Utils.UID_LENGTH));
+            int b = lo[0] & 0xff;
+            int i = b == 0 ? 0 : buf.getInt(20 + 4 * (b - 1));
+            int j = buf.getInt(HEADER - 4);
+            //the first id not less than LO
+            while (i < j) {
+                int mid = (i + j) >>> 1;
+                if (compare(mid, lo) < 0) {
+                    i = mid + 1;
+                } else {
+                    j = mid;
+                }
+            }
+            byte[] id = new byte[ID_BYTES];
+            for (int n = buf.getInt(HEADER - 4); i < n && found.size() < 2; i += 1) {
+                buf.get(HEADER + i * ID_BYTES, id);
+                String sha = Pack.toHex(id, 0);
+                if (!sha.startsWith(prefix)) {
+                    break;
+                }
+                found.add(sha);
+            }
+        }
+
+        /** Returns the ids of this table, in order. */
+        byte[] ids() {
+            byte[] result = new byte[buf.getInt(HEADER - 4) * ID_BYTES];
+            buf.get(HEADER, result);
+            return result;
+        }
+
+        /** Compares the Ith id of this table with the id ID. */
+        private int compare(int i, byte[] id) {
+            int at = HEADER + i * ID_BYTES;
+            for (int k = 0; k < ID_BYTES; k += 1) {
+                int cmp = Integer.compare(buf.get(at + k) & 0xff, id[k] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+
+        /** The table. */
+        private final MappedByteBuffer buf;
+        /** Offsets in the log of the stretch the table covers. */
+        private final long start, end;
+    }
+}
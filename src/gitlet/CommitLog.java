@@ -0,0 +1,344 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Every commit ever made, in the order they were made, kept in
+ *  .gitlet/.commitlog so that global-log and find need not read the
+ *  commits themselves.  The log is MAGIC and then, for each commit, its
+ *  20-byte id, timestamp and message.  It is only ever appended to, and
+ *  each append is part of the journal of the command that made the
+ *  commit, so a commit appears in the log exactly when its command takes
+ *  effect.
+ *
+ *  find looks messages up in .gitlet/.commitlog.idx, a hash table over
+ *  the log kept on disk.  It is a header (MAGIC, the number of commits
+ *  indexed and the offset in the log just after the last of them), the
+ *  head of each of BUCKETS chains, and then an entry per commit: its
+ *  offset in the log, the hash of its message and the number of the next
+ *  commit in its chain.  A commit goes into the chain of the bucket its
+ *  message's hash falls in, at the front, so looking up a message reads
+ *  one chain and, from the log, only the commits whose hashes match.
+ *
+ *  The index trails the log: a command that adds a commit first indexes
+ *  whatever the log holds beyond it, so it is at most one command behind,
+ *  and readers scan the few commits not yet indexed.  The index is
+ *  written without the journal.  Its header is written last, and entries
+ *  and heads beyond the number of commits it gives are ignored, so a
+ *  command cut short while indexing leaves an index that is merely
+ *  further behind.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class CommitLog {
+
+    /** Magic numbers at the start of the log and the index. */
+    private static final int LOG_MAGIC = 0x47434c47, IDX_MAGIC = 0x47434c58;
+    /** Number of hash chains in the index. */
+    private static final int BUCKETS = 1 << 16;
+    /** Length of a SHA-1 id in bytes. */
+    private static final int ID_BYTES = Utils.UID_LENGTH / 2;
+    /** Length of the index header, and offset of the first index entry. */
+    private static final int HEADER = 4 + 4 + 8, ENTRIES = HEADER + 4 * BUCKETS;
+    /** Length of one index entry: offset, hash and next. */
+    private static final int ENTRY = 8 + 4 + 4;
+    /** Stands for the end of a chain. */
+    private static final int NONE = -1;
+
+    /** The log and its index. */
+    private static final File LOG = Utils.join(Main.GITLET_FOLDER, ".commitlog");
+    private static final File IDX = Utils.join(Main.GITLET_FOLDER, ".commitlog.idx");
+
+    /** One commit of the log. */
+    static class Entry {
+        /** Id, timestamp and message of the commit. */
+        final String sha, timestamp, message;
+        /** Offset in the log just after the commit's record. */
+        final long end;
+
+        /** The commit SHA made at TIMESTAMP with MESSAGE, whose record
+         *  ends at offset END. */
+        Entry(String sha, String timestamp, String message, long end) {
+            this.sha = sha;
+            this.timestamp = timestamp;
+            this.message = message;
+            this.end = end;
+        }
+    }
+
+    /** Records, as part of this command's journal, that a new repository
+     *  holds the initial commit INIT. */
+    static void create(Commit init) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(LOG_MAGIC);
+            out.write(encode(init));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Journal.write(LOG, bytes.toByteArray());
+    }
+
+    /** Records, as part of this command's journal, that commit C has been
+     *  made, first bringing the index up to date with the log.  Only a
+     *  command holding the repository lock may add commits. */
+    static void add(Commit c) {
+        add(List.of(c));
+    }
+
+    /** As for add, for each of COMMITS in turn. */
+    static void add(List<Commit> commits) {
+        open();
+        catchUp();
+        CommitIds.catchUp();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (Commit c : commits) {
+            records.writeBytes(encode(c));
+        }
+        Journal.append(LOG, records.toByteArray());
+    }
+
+    /** Calls VISITOR on each commit of the log in turn, oldest first. */
+    static void each(Consumer<Entry> visitor) {
+        open();
+        scan(4, visitor);
+    }
+
+    /** Returns the ids of the commits whose message is MESSAGE, oldest
+     *  first. */
+    static List<String> find(String message) {
+        open();
+        int hash = message.hashCode();
+        ArrayList<String> result = new ArrayList<>();
+        long end = 4;
+        if (IDX.exists()) {
+            try (RandomAccessFile idx = new RandomAccessFile(IDX, "r");
+                 RandomAccessFile log = new RandomAccessFile(LOG, "r")) {
+                if (idx.length() >= ENTRIES && idx.readInt() == IDX_MAGIC) {
+                    int count = idx.readInt();
+                    end = idx.readLong();
+                    idx.seek(HEADER + 4L * (hash & (BUCKETS - 1)));
+                    for (int n = idx.readInt(); n != NONE; ) {
+                        idx.seek(ENTRIES + (long) ENTRY * n);
+                        long offset = idx.readLong();
+                        int h = idx.readInt();
+                        if (n < count && h == hash) {
+                            log.seek(offset);
+                            Entry e = read(log, offset);
+                            if (e.message.equals(message)) {
+                                result.add(e.sha);
+                            }
+                        }
+                        n = idx.readInt();
+                    }
+                    Collections.reverse(result);
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        scan(end, e -> {
+            if (e.message.equals(message)) {
+                result.add(e.sha);
+            }
+        });
+        return result;
+    }
+
+    /** Creates the log of a repository made before there was one, from
+     *  the commits it holds, oldest first.  The new log only takes the
+     *  place of a missing one, so commands that do this at the same time
+     *  cannot undo each other's appends. */
+    private static void open() {
+        if (LOG.exists()) {
+            return;
+        }
+        List<String> shas;
+        if (Main.ALL_COMMITS.exists()) {
+            HashMap<?, ?> all = Utils.readObject(Main.ALL_COMMITS, HashMap.class);
+            shas = new ArrayList<>();
+            for (Object sha : all.keySet()) {
+                shas.add((String) sha);
+            }
+        } else {
+            shas = Utils.plainFilenamesIn(Main.COMMITS_FOLDER);
+        }
+        ArrayList<Commit> commits = new ArrayList<>();
+        for (String sha : shas) {
+            commits.add(Main.fromShaC(sha));
+        }
+        commits.sort(Comparator.comparingLong(CommitGraph::timeOf)
+                .thenComparing(c -> c.shaName));
+        File tmp;
+        try {
+            tmp = File.createTempFile(".commitlog", ".tmp", Main.GITLET_FOLDER);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)))) {
+                out.writeInt(LOG_MAGIC);
+                for (Commit c : commits) {
+                    out.write(encode(c));
+                }
+            }
+            Files.createLink(LOG.toPath(), tmp.toPath());
+        } catch (FileAlreadyExistsException excp) {
+            //another command created it first
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** Adds to the index every commit of the log it does not yet hold. */
+    private static void catchUp() {
+        try (RandomAccessFile idx = new RandomAccessFile(IDX, "rw")) {
+            int count = 0;
+            long end = 4;
+            int[] heads = new int[BUCKETS];
+            if (idx.length() >= ENTRIES && idx.readInt() == IDX_MAGIC) {
+                count = idx.readInt();
+                end = idx.readLong();
+                byte[] data = new byte[4 * BUCKETS];
+                idx.readFully(data);
+                DataInputStream in = new DataInputStream(
+                        new ByteArrayInputStream(data));
+                for (int i = 0; i < BUCKETS; i += 1) {
+                    heads[i] = in.readInt();
+                }
+            } else {
+                Arrays.fill(heads, NONE);
+            }
+            if (end == LOG.length()) {
+                return;
+            }
+            int first = count;
+            //heads written by an indexing cut short may name entries beyond
+            //COUNT; their chains lead back to the entries that count
+            for (int i = 0; i < BUCKETS; i += 1) {
+                while (heads[i] >= first) {
+                    idx.seek(ENTRIES + (long) ENTRY * heads[i] + 12);
+                    heads[i] = idx.readInt();
+                }
+            }
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(entries);
+            boolean[] moved = new boolean[BUCKETS];
+            long[] offset = {end};
+            int[] n = {count};
+            scan(end, e -> {
+                int hash = e.message.hashCode();
+                int bucket = hash & (BUCKETS - 1);
+                try {
+                    out.writeLong(offset[0]);
+                    out.writeInt(hash);
+                    out.writeInt(heads[bucket]);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                heads[bucket] = n[0];
+                moved[bucket] = true;
+                n[0] += 1;
+                offset[0] = e.end;
+            });
+            idx.seek(ENTRIES + (long) ENTRY * first);
+            idx.write(entries.toByteArray());
+            if (first == 0 || n[0] - first > BUCKETS / 16) {
+                ByteArrayOutputStream all = new ByteArrayOutputStream();
+                DataOutputStream h = new DataOutputStream(all);
+                for (int head : heads) {
+                    h.writeInt(head);
+                }
+                idx.seek(HEADER);
+                idx.write(all.toByteArray());
+            } else {
+                for (int i = 0; i < BUCKETS; i += 1) {
+                    if (moved[i]) {
+                        idx.seek(HEADER + 4L * i);
+                        idx.writeInt(heads[i]);
+                    }
+                }
+            }
+            idx.seek(0);
+            idx.writeInt(IDX_MAGIC);
+            idx.writeInt(n[0]);
+            idx.writeLong(offset[0]);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Calls VISITOR on each commit of the log from offset START, which
+     *  is 4 or the end of a record, on.  A commit still being appended is
+     *  not visited. */
+    static void scan(long start, Consumer<Entry> visitor) {
+        try (FileInputStream file = new FileInputStream(LOG)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16));
+            if (in.readInt() != LOG_MAGIC) {
+                throw Utils.error("Corrupt commit log.");
+            }
+            file.getChannel().position(start);
+            in = new DataInputStream(new BufferedInputStream(file, 1 << 16));
+            for (long offset = start; true; ) {
+                Entry e;
+                try {
+                    e = read(in, offset);
+                } catch (EOFException excp) {
+                    return;
+                }
+                visitor.accept(e);
+                offset = e.end;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the commit read from IN, whose record starts at offset
+     *  START. */
+    private static Entry read(DataInput in, long start) throws IOException {
+        byte[] id = new byte[ID_BYTES];
+        in.readFully(id);
+        String timestamp = Codec.readString(in);
+        String message = Codec.readString(in);
+        long end = start + ID_BYTES + 8 + timestamp.getBytes(StandardCharsets.UTF_8).length
+                + message.getBytes(StandardCharsets.UTF_8).length;
+        return new Entry(Pack.toHex(id, 0), timestamp, message, end);
+    }
+
+    /** Returns the log record of commit C. */
+    private static byte[] encode(Commit c) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(Pack.toBytes(c.shaName));
+            Codec.writeString(out, c.timestamp);
+            Codec.writeString(out, c.message);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,376 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A way of compressing stored objects.  Each object records the id of
+ *  the codec it was written with, so a repository may hold objects
+ *  written under different storage.compression settings.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+abstract class Compression {
+
+    /** Objects stored as they are. */
+    static final Compression NONE = new Compression(0, "none") {
+        @Override
+        OutputStream compress(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        InputStream decompress(InputStream in) {
+            return in;
+        }
+    };
+
+    /** zlib deflate: slower, smaller. */
+    static final Compression DEFLATE = new Compression(1, "deflate") {
+        @Override
+        OutputStream compress(OutputStream out) {
+            Deflater deflater = new Deflater();
+            return new DeflaterOutputStream(out, deflater, ObjectStore.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    deflater.end();
+                }
+            };
+        }
+
+        @Override
+        InputStream decompress(InputStream in) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, ObjectStore.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inflater.end();
+                }
+            };
+        }
+    };
+
+    /** A byte-oriented LZ77 codec in the style of LZ4: faster, larger. */
+    static final Compression LZ = new Compression(2, "lz") {
+        @Override
+        OutputStream compress(OutputStream out) {
+            return new LzOutputStream(out);
+        }
+
+        @Override
+        InputStream decompress(InputStream in) {
+            return new LzInputStream(in);
+        }
+    };
+
+    /** All codecs, indexed by id. */
+    private static final Compression[] CODECS = {NONE, DEFLATE, LZ};
+
+    /** The codec with id ID and name NAME. */
+    private Compression(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /** Returns a stream that compresses what is written to it into OUT.
+     *  Closing it closes OUT. */
+    abstract OutputStream compress(OutputStream out) throws IOException;
+
+    /** Returns a stream that decompresses what is read from IN. */
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /** Returns the codec with id ID. */
+    static Compression byId(int id) {
+        if (id < 0 || id >= CODECS.length) {
+            throw Utils.error("Unknown compression %d.", id);
+        }
+        return CODECS[id];
+    }
+
+    /** Returns the codec this repository writes new objects with. */
+    static Compression configured() {
+        String name = Config.get(Config.COMPRESSION, NONE.name);
+        for (Compression c : CODECS) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+        throw Utils.error("Unknown compression %s.", name);
+    }
+
+    /** Identifies this codec in object headers. */
+    final int id;
+    /** Names this codec in .gitlet/.config. */
+    final String name;
+
+    /** Size of the blocks LZ compresses independently. */
+    private static final int LZ_BLOCK = 1 << 16;
+    /** Shortest match worth encoding. */
+    private static final int MIN_MATCH = 4;
+    /** Number of bits of the match-finder hash. */
+    private static final int HASH_BITS = 14;
+
+    /** Writes LZ blocks.  A block is its raw length and its compressed
+     *  length, then either the raw bytes (when compressing did not help)
+     *  or a sequence of tokens.  A token is a byte holding a literal count
+     *  and a match length less MIN_MATCH in its two nibbles, either of
+     *  which is continued in following bytes when it is 15; then the
+     *  literals; then, unless it ends the block, a two-byte match
+     *  offset. */
+    private static class LzOutputStream extends FilterOutputStream {
+        /** Compresses into OUT. */
+        LzOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (len == block.length) {
+                flushBlock();
+            }
+            block[len++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int n) throws IOException {
+            while (n > 0) {
+                if (len == block.length) {
+                    flushBlock();
+                }
+                int k = Math.min(n, block.length - len);
+                System.arraycopy(b, off, block, len, k);
+                len += k;
+                off += k;
+                n -= k;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushBlock();
+            super.close();
+        }
+
+        /** Compresses and writes the buffered block, if any. */
+        private void flushBlock() throws IOException {
+            if (len == 0) {
+                return;
+            }
+            int n = compressBlock();
+            writeInt(len);
+            if (n < len) {
+                writeInt(n);
+                out.write(packed, 0, n);
+            } else {
+                writeInt(len);
+                out.write(block, 0, len);
+            }
+            len = 0;
+        }
+
+        /** Compresses BLOCK[0..LEN) into PACKED and returns the compressed
+         *  length, or LEN if that would not fit. */
+        private int compressBlock() {
+            int[] table = new int[1 << HASH_BITS];
+            Arrays.fill(table, -1);
+            pos = 0;
+            int p = 0;
+            int anchor = 0;
+            int limit = len - MIN_MATCH;
+            while (p <= limit) {
+                int h = hash(block, p);
+                int cand = table[h];
+                table[h] = p;
+                if (cand < 0 || p - cand > 0xffff
+                        || readInt(block, cand) != readInt(block, p)) {
+                    p += 1;
+                    continue;
+                }
+                int m = p + MIN_MATCH;
+                while (m < len && block[m] == block[m - p + cand]) {
+                    m += 1;
+                }
+                if (!token(anchor, p - anchor, m - p, p - cand)) {
+                    return len;
+                }
+                p = m;
+                anchor = m;
+            }
+            if (!token(anchor, len - anchor, -1, 0)) {
+                return len;
+            }
+            return pos;
+        }
+
+        /** Appends to PACKED a token for the NLIT literals at BLOCK[START]
+         *  followed by a match of length MLEN at distance DIST, or by
+         *  nothing if MLEN is -1.  Returns false if PACKED would overflow
+         *  the raw block length. */
+        private boolean token(int start, int nlit, int mlen, int dist) {
+            int m = mlen < 0 ? 0 : mlen - MIN_MATCH;
+            if (pos + nlit + nlit / 255 + m / 255 + 16 >= len) {
+                return false;
+            }
+            packed[pos++] = (byte) ((Math.min(nlit, 15) << 4) | Math.min(m, 15));
+            pos = extend(nlit);
+            System.arraycopy(block, start, packed, pos, nlit);
+            pos += nlit;
+            if (mlen >= 0) {
+                packed[pos++] = (byte) (dist >>> 8);
+                packed[pos++] = (byte) dist;
+                pos = extend(m);
+            }
+            return true;
+        }
+
+        /** Appends the continuation bytes of a nibble holding N to PACKED
+         *  and returns the new end of PACKED. */
+        private int extend(int n) {
+            if (n >= 15) {
+                for (n -= 15; n >= 255; n -= 255) {
+                    packed[pos++] = (byte) 255;
+                }
+                packed[pos++] = (byte) n;
+            }
+            return pos;
+        }
+
+        /** Writes V to the underlying stream, big-endian. */
+        private void writeInt(int v) throws IOException {
+            out.write(v >>> 24);
+            out.write(v >>> 16);
+            out.write(v >>> 8);
+            out.write(v);
+        }
+
+        /** Uncompressed bytes of the current block. */
+        private final byte[] block = new byte[LZ_BLOCK];
+        /** Number of bytes in BLOCK. */
+        private int len;
+        /** Compressed form of BLOCK, and its length so far. */
+        private final byte[] packed = new byte[LZ_BLOCK + LZ_BLOCK / 255 + 16];
+        private int pos;
+    }
+
+    /** Reads what an LzOutputStream wrote. */
+    private static class LzInputStream extends InputStream {
+        /** Decompresses from IN. */
+        LzInputStream(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos == len && !nextBlock()) {
+                return -1;
+            }
+            return block[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int n) throws IOException {
+            if (n == 0) {
+                return 0;
+            }
+            if (pos == len && !nextBlock()) {
+                return -1;
+            }
+            int k = Math.min(n, len - pos);
+            System.arraycopy(block, pos, b, off, k);
+            pos += k;
+            return k;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /** Reads and decompresses the next block.  Returns false at the
+         *  end of the stream. */
+        private boolean nextBlock() throws IOException {
+            int raw;
+            try {
+                raw = in.readInt();
+            } catch (EOFException excp) {
+                return false;
+            }
+            int n = in.readInt();
+            if (raw > LZ_BLOCK || n > raw) {
+                throw new IOException("corrupt compressed object");
+            }
+            pos = 0;
+            len = raw;
+            if (n == raw) {
+                in.readFully(block, 0, raw);
+                return true;
+            }
+            in.readFully(packed, 0, n);
+            int p = 0;
+            int out = 0;
+            while (p < n) {
+                int token = packed[p++] & 0xff;
+                int nlit = token >>> 4;
+                if (nlit == 15) {
+                    int b;
+                    do {
+                        b = packed[p++] & 0xff;
+                        nlit += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(packed, p, block, out, nlit);
+                p += nlit;
+                out += nlit;
+                if (p >= n) {
+                    break;
+                }
+                int dist = (packed[p] & 0xff) << 8 | (packed[p + 1] & 0xff);
+                p += 2;
+                int mlen = token & 0xf;
+                if (mlen == 15) {
+                    int b;
+                    do {
+                        b = packed[p++] & 0xff;
+                        mlen += b;
+                    } while (b == 255);
+                }
+                mlen += MIN_MATCH;
+                for (int i = 0; i < mlen; i += 1, out += 1) {
+                    block[out] = block[out - dist];
+                }
+            }
+            if (out != raw) {
+                throw new IOException("corrupt compressed object");
+            }
+            return true;
+        }
+
+        /** Source of compressed blocks. */
+        private final DataInputStream in;
+        /** Current decompressed block, its length, and the read position. */
+        private final byte[] block = new byte[LZ_BLOCK];
+        private int len, pos;
+        /** Compressed form of the current block. */
+        private final byte[] packed = new byte[LZ_BLOCK];
+    }
+
+    /** Returns the match-finder hash of the four bytes of B at P. */
+    private static int hash(byte[] b, int p) {
+        return (readInt(b, p) * -1640531535) >>> (32 - HASH_BITS);
+    }
+
+    /** Returns the four bytes of B at P as a big-endian int. */
+    private static int readInt(byte[] b, int p) {
+        return (b[p] & 0xff) << 24 | (b[p + 1] & 0xff) << 16
+                | (b[p + 2] & 0xff) << 8 | (b[p + 3] & 0xff);
+    }
+}
@@ -0,0 +1,71 @@
+package gitlet;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/** Per-repository settings, kept in .gitlet/.config as key=value lines.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Config {
+
+    /** Store file contents as content-defined chunks (true/false). */
+    static final String CHUNKING = "storage.chunking";
+    /** Codec new objects are compressed with (none, deflate or lz). */
+    static final String COMPRESSION = "storage.compression";
+    /** Number of threads that hash and write working files. */
+    static final String THREADS = "core.threads";
+    /** Report how many files checkout and reset wrote (true/false). */
+    static final String CHECKOUT_STATS = "checkout.stats";
+    /** Total size in bytes of the caches of commits, trees and blobs. */
+    static final String CACHE_SIZE = "core.cacheSize";
+    /** Report the use of those caches after each command (true/false). */
+    static final String CACHE_STATS = "cache.stats";
+
+    /** Settings of this repository, loaded on first use. */
+    private static Properties settings;
+
+    /** Returns the value of KEY, or DEFAULT if it is not set. */
+    static String get(String key, String dflt) {
+        return load().getProperty(key, dflt);
+    }
+
+    /** Returns true iff KEY is set to "true". */
+    static boolean isSet(String key) {
+        return Boolean.parseBoolean(get(key, "false"));
+    }
+
+    /** Sets KEY to VALUE and saves the settings. */
+    static void set(String key, String value) {
+        load().setProperty(key, value);
+        try (OutputStream out = new FileOutputStream(Main.CONFIG)) {
+            settings.store(out, null);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Forgets the loaded settings, so they are read again when next
+     *  needed. */
+    static synchronized void reset() {
+        settings = null;
+    }
+
+    /** Returns the settings, reading .gitlet/.config if need be. */
+    private static synchronized Properties load() {
+        if (settings == null) {
+            settings = new Properties();
+            if (Main.CONFIG.exists()) {
+                try (InputStream in = new FileInputStream(Main.CONFIG)) {
+                    settings.load(in);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,227 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/** A long-running Gitlet that serves the commands of other processes
+ *  over the Unix domain socket .gitlet/.daemon, so that they skip
+ *  starting a JVM and reading the repository afresh.  Between commands
+ *  it keeps the commits it has read, the commit graph and the index in
+ *  memory.  Refs and the staging area are small and are read for each
+ *  command, so changes made by processes that bypass the daemon are
+ *  always seen.
+ *
+ *  A request is the number of arguments in decimal and then each
+ *  argument, all as UTF-8 and each ended by a NUL byte.  The reply is
+ *  everything the command printed, after which the daemon closes the
+ *  connection.  Any client that can write to a Unix socket will do, such
+ *  as the gitletc script; Main itself forwards commands to the daemon
+ *  whenever one is running, apart from fast-import, which reads its own
+ *  standard input, and traced commands, whose reports go to the standard
+ *  error.  Commands are run one at a time, in the
+ *  order they arrive.  The request "daemon stop" makes the daemon exit.
+ *
+ *  Since every command waits for the one before it, a client that
+ *  connects and then sends nothing would hold up every other.  So a
+ *  client has REQUEST_TIMEOUT milliseconds to send its whole request,
+ *  after which the daemon drops the connection and moves on.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Daemon {
+
+    /** The socket the daemon listens on. */
+    static final File SOCKET = Utils.join(Main.GITLET_FOLDER, ".daemon");
+    /** Milliseconds a client has to send its request. */
+    static final long REQUEST_TIMEOUT = 10_000;
+
+    /** Serves commands until asked to stop. */
+    static void serve() throws IOException {
+        if (SOCKET.exists()) {
+            if (connect() != null) {
+                throw Utils.error("A daemon is already running.");
+            }
+            SOCKET.delete(); //left behind by a daemon that was killed
+        }
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(SOCKET.toPath());
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            Runtime.getRuntime().addShutdownHook(new Thread(SOCKET::delete));
+            PrintStream stdout = System.out;
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "gitlet daemon timer");
+                t.setDaemon(true);
+                return t;
+            });
+            boolean stopping = false;
+            while (!stopping) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (IOException excp) {
+                    System.err.println("gitlet daemon: " + excp.getMessage());
+                    continue;
+                }
+                try {
+                    //closing the channel makes a read blocked on it fail at once
+                    ScheduledFuture<?> deadline = timer.schedule(() -> {
+                        try {
+                            client.close();
+                        } catch (IOException excp) {
+                            //already closed
+                        }
+                    }, REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+                    List<String> args;
+                    try {
+                        args = readRequest(
+                                new BufferedInputStream(Channels.newInputStream(client)));
+                    } catch (AsynchronousCloseException excp) {
+                        throw new IOException("no request within "
+                                + REQUEST_TIMEOUT + " ms", excp);
+                    } finally {
+                        deadline.cancel(false);
+                    }
+                    if (args == null) {
+                        continue; //a client checking whether a daemon is running
+                    }
+                    ByteArrayOutputStream reply = new ByteArrayOutputStream();
+                    System.setOut(new PrintStream(reply, false, StandardCharsets.UTF_8));
+                    try {
+                        stopping = args.size() == 2 && args.get(0).equals("daemon")
+                                && args.get(1).equals("stop");
+                        if (stopping) {
+                            System.out.println("Daemon stopped.");
+                        } else {
+                            run(args.toArray(new String[0]));
+                        }
+                    } finally {
+                        System.out.flush();
+                        System.setOut(stdout);
+                    }
+                    OutputStream out = Channels.newOutputStream(client);
+                    out.write(reply.toByteArray());
+                    out.flush();
+                } catch (IOException excp) {
+                    System.err.println("gitlet daemon: " + excp.getMessage());
+                } finally {
+                    try {
+                        client.close();
+                    } catch (IOException excp) {
+                        //the reply, if any, is already sent
+                    }
+                }
+            }
+            timer.shutdownNow();
+        } finally {
+            SOCKET.delete();
+        }
+    }
+
+    /** Runs the command ARGS as Main would, printing its failure, if any,
+     *  rather than letting it stop the daemon. */
+    private static void run(String... args) {
+        Config.reset();
+        Pack.reset();
+        try {
+            if (args.length > 0 && args[0].equals("daemon")) {
+                throw Utils.error("A daemon is already running.");
+            }
+            Main.execute(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        } catch (IOException | RuntimeException excp) {
+            System.out.println("Error: " + excp.getMessage());
+        }
+    }
+
+    /** If a daemon is serving this repository, has it run the command
+     *  ARGS, copies what it printed to the standard output, and returns
+     *  true.  Otherwise returns false. */
+    static boolean forward(String... args) throws IOException {
+        if (!SOCKET.exists() || (args.length == 1 && args[0].equals("daemon"))
+                || (args.length > 0 && (args[0].equals("fast-import")
+                    || args[0].startsWith("--trace")))) {
+            return false; //fast-import reads this process's standard input; traces go to its stderr
+        }
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return false;
+        }
+        try (SocketChannel c = channel) {
+            OutputStream out = Channels.newOutputStream(c);
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            request.write(Integer.toString(args.length).getBytes(StandardCharsets.UTF_8));
+            request.write(0);
+            for (String arg : args) {
+                request.write(arg.getBytes(StandardCharsets.UTF_8));
+                request.write(0);
+            }
+            out.write(request.toByteArray());
+            out.flush();
+            c.shutdownOutput();
+            Channels.newInputStream(c).transferTo(System.out);
+            System.out.flush();
+        }
+        return true;
+    }
+
+    /** Returns a connection to the daemon, or null if none is
+     *  listening. */
+    private static SocketChannel connect() {
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(SOCKET.toPath()));
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the arguments of the request read from IN, or null if IN
+     *  is empty. */
+    private static List<String> readRequest(InputStream in) throws IOException {
+        in.mark(1);
+        if (in.read() < 0) {
+            return null;
+        }
+        in.reset();
+        int n;
+        try {
+            n = Integer.parseInt(readString(in));
+        } catch (NumberFormatException excp) {
+            throw new IOException("malformed request");
+        }
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            args.add(readString(in));
+        }
+        return args;
+    }
+
+    /** Returns the NUL-terminated UTF-8 string read from IN. */
+    private static String readString(InputStream in) throws IOException {
+        ByteArrayOutputStream s = new ByteArrayOutputStream();
+        for (int b = in.read(); b != 0; b = in.read()) {
+            if (b < 0) {
+                throw new IOException("request cut short");
+            }
+            s.write(b);
+        }
+        return s.toString(StandardCharsets.UTF_8);
+    }
+}
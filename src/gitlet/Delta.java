@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Byte-level deltas between two versions of a file, used to store
+ *  similar blobs in a pack as a base plus a list of edits.  A delta is
+ *  a sequence of instructions, each either COPY (take a run of bytes
+ *  from the base) or INSERT (take literal bytes from the delta itself).
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Delta {
+
+    /** Instruction tag for copying OFFSET, LENGTH bytes from the base. */
+    private static final int COPY = 1;
+    /** Instruction tag for inserting LENGTH literal bytes. */
+    private static final int INSERT = 2;
+    /** Size of the blocks of the base that are indexed for matching. */
+    private static final int BLOCK = 16;
+
+    /** Returns a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> index = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            index.putIfAbsent(hash(base, i), i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, target.length);
+        int pending = 0; //start of literal bytes not yet emitted
+        int pos = 0;
+        while (pos + BLOCK <= target.length) {
+            Integer match = index.get(hash(target, pos));
+            if (match == null || !same(base, match, target, pos, BLOCK)) {
+                pos += 1;
+                continue;
+            }
+            int b = match;
+            int t = pos;
+            while (b > 0 && t > pending && base[b - 1] == target[t - 1]) {
+                b -= 1; //extends the match backwards into the literal run
+                t -= 1;
+            }
+            int end = pos + BLOCK;
+            int bend = match + BLOCK;
+            while (end < target.length && bend < base.length
+                    && base[bend] == target[end]) {
+                end += 1;
+                bend += 1;
+            }
+            insert(out, target, pending, t);
+            out.write(COPY);
+            writeVarint(out, b);
+            writeVarint(out, end - t);
+            pos = end;
+            pending = end;
+        }
+        insert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = new int[] {0};
+        byte[] result = new byte[readVarint(delta, pos)];
+        int r = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++];
+            if (op == COPY) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, r, len);
+                r += len;
+            } else if (op == INSERT) {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, r, len);
+                pos[0] += len;
+                r += len;
+            } else {
+                throw Utils.error("Corrupt delta.");
+            }
+        }
+        if (r != result.length) {
+            throw Utils.error("Corrupt delta.");
+        }
+        return result;
+    }
+
+    /** Emits an INSERT of DATA[FROM..TO) to OUT, if that range is
+     *  non-empty. */
+    private static void insert(ByteArrayOutputStream out, byte[] data,
+                               int from, int to) {
+        if (to > from) {
+            out.write(INSERT);
+            writeVarint(out, to - from);
+            out.write(data, from, to - from);
+        }
+    }
+
+    /** Returns a hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+
+    /** Returns true iff the LEN bytes at A[I] and B[J] are equal. */
+    private static boolean same(byte[] a, int i, byte[] b, int j, int len) {
+        for (int k = 0; k < len; k += 1) {
+            if (a[i + k] != b[j + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes the non-negative VAL to OUT seven bits at a time. */
+    private static void writeVarint(ByteArrayOutputStream out, int val) {
+        while (val >= 0x80) {
+            out.write((val & 0x7f) | 0x80);
+            val >>>= 7;
+        }
+        out.write(val);
+    }
+
+    /** Reads a varint from DATA at POS[0], advancing POS[0]. */
+    private static int readVarint(byte[] data, int[] pos) {
+        int val = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = data[pos[0]++] & 0xff;
+            val |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return val;
+            }
+        }
+    }
+}
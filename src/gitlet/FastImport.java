@@ -0,0 +1,307 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/** Bulk import of history read from a stream, for bringing existing
+ *  projects under Gitlet without an add per file.  The stream is a
+ *  simplified form of the input of git fast-import: a series of commits,
+ *  each
+ *      commit BRANCH
+ *      [date SECONDS]
+ *      data LENGTH
+ *      MESSAGE
+ *  followed by the changes it makes to its parent's files, each either
+ *      M PATH
+ *      data LENGTH
+ *      CONTENT
+ *  to add or replace file PATH, or
+ *      D PATH
+ *  to remove it.  LENGTH is the number of bytes that follow, and a
+ *  newline after them is optional.  SECONDS gives the time of the commit
+ *  since the epoch; by default it is the current time, or a second after
+ *  the last commit without a date if that is later, so that commits with
+ *  the same message still get different ids.  Blank lines and
+ *  lines starting with '#' between records are ignored.  A commit follows
+ *  the last commit on its branch; the first commit on a new branch
+ *  follows the current branch.
+ *
+ *  Blobs are read a batch at a time, so that the import holds at most
+ *  about BATCH_BYTES of file contents.  The blobs of a batch are hashed
+ *  in parallel and written together into a new pack, as git fast-import
+ *  does, since a file each would cost far more than the writing itself;
+ *  only blobs too big for a pack are written loose, again in parallel.
+ *  The commits that refer to a batch are made once it is written.  The
+ *  branches, the commit log and the head are written once, at the end, so
+ *  the whole import takes effect at once, like any other command.  The
+ *  working directory is left as it is, even if the current branch moves.
+ *
+ *  Each commit is checked as it is read, before its batch is written; if
+ *  the import fails anyway, the packs, loose blobs and commits it wrote
+ *  are deleted, and the commit graph is only told of the commits once
+ *  they are all made.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class FastImport {
+
+    /** Most bytes of file contents held before they are written. */
+    static final long BATCH_BYTES = 64L << 20;
+    /** Most files held before they are written. */
+    static final int BATCH_FILES = 1 << 14;
+
+    /** Imports the commits read from IN.  Prints the number of commits
+     *  and files imported. */
+    static void run(InputStream in) throws IOException {
+        new FastImport(new DataInputStream(new BufferedInputStream(in, 1 << 16))).run();
+    }
+
+    /** An import reading from IN. */
+    private FastImport(DataInputStream in) {
+        this.in = in;
+        HashMap<?, ?> all = Journal.readObject(Main.ALL_BRANCHES, HashMap.class);
+        for (Object branch : all.keySet()) {
+            branches.put((String) branch, (String) all.get(branch));
+        }
+    }
+
+    /** Reads and imports every commit, deleting what was written if that
+     *  fails. */
+    private void run() throws IOException {
+        try {
+            importAll();
+        } catch (IOException | RuntimeException excp) {
+            for (File f : written) {
+                if (f.getParentFile().equals(Main.PACKS_FOLDER)) {
+                    Pack.delete(f);
+                } else {
+                    f.delete();
+                }
+            }
+            throw excp;
+        }
+    }
+
+    /** Reads and imports every commit. */
+    private void importAll() throws IOException {
+        String line = nextRecord();
+        while (line != null) {
+            if (!line.startsWith("commit ")) {
+                throw Utils.error("Expected a commit, got: %s", line);
+            }
+            Pending c = new Pending(line.substring("commit ".length()));
+            line = readLine();
+            if (line != null && line.startsWith("date ")) {
+                try {
+                    c.date = new Date(Long.parseLong(line.substring("date ".length())) * 1000);
+                } catch (NumberFormatException excp) {
+                    throw Utils.error("Bad date: %s", line);
+                }
+                line = readLine();
+            } else {
+                undated = Math.max(System.currentTimeMillis() / 1000 * 1000, undated + 1000);
+                c.date = new Date(undated);
+            }
+            c.message = new String(readData(line), StandardCharsets.UTF_8);
+            String id = Utils.sha1(c.message, Commit.makeTimestamp(c.date));
+            if (!ids.add(id) || Utils.join(Main.COMMITS_FOLDER, id).exists()) {
+                throw Utils.error("A commit with message \"%s\" made at %s already exists.",
+                        c.message, Commit.makeTimestamp(c.date));
+            }
+            for (line = nextRecord(); line != null && !line.startsWith("commit ");
+                 line = nextRecord()) {
+                if (line.startsWith("M ")) {
+                    String path = path(line);
+                    byte[] content = readData(readLine());
+                    c.changes.put(path, names.size());
+                    names.add(path);
+                    contents.add(content);
+                    held += content.length;
+                } else if (line.startsWith("D ")) {
+                    c.changes.put(path(line), null);
+                } else {
+                    throw Utils.error("Expected a file change, got: %s", line);
+                }
+            }
+            commits.add(c);
+            if (held >= BATCH_BYTES || names.size() >= BATCH_FILES) {
+                flush();
+            }
+        }
+        flush();
+        if (made.isEmpty()) {
+            return;
+        }
+        for (Commit c : made) {
+            CommitGraph.get().add(c);
+        }
+        CommitLog.add(made);
+        HashMap<String, String> all = new HashMap<>(branches);
+        Journal.writeObject(Main.ALL_BRANCHES, all);
+        String current = Journal.readString(Main.CURR_BRANCH);
+        if (all.containsKey(current)) {
+            Journal.writeString(Main.HEAD, all.get(current));
+        }
+        System.out.println("Imported " + made.size() + " commits and " + imported
+                + " files.");
+    }
+
+    /** Writes the blobs read so far, in parallel, and then makes the
+     *  commits that refer to them, in order. */
+    private void flush() throws IOException {
+        String current = Journal.readString(Main.CURR_BRANCH);
+        int n = names.size();
+        Blob[] blobs = new Blob[n];
+        WorkTree.each(n, i -> blobs[i] = new Blob(names.get(i), contents.get(i)));
+        //each blob is written once, into a pack unless it is too big
+        List<Blob> packed = new ArrayList<>();
+        List<Blob> loose = new ArrayList<>();
+        HashSet<String> seen = new HashSet<>();
+        for (Blob b : blobs) {
+            if (seen.add(b.shaName) && !Utils.join(Main.BLOBS_FOLDER, b.shaName).exists()
+                    && !Pack.contains(b.shaName)) {
+                (b.content.length > Pack.BIG_FILE_THRESHOLD ? loose : packed).add(b);
+            }
+        }
+        if (!packed.isEmpty()) {
+            written.add(Pack.write(packed));
+        }
+        for (Blob b : loose) {
+            written.add(Utils.join(Main.BLOBS_FOLDER, b.shaName));
+        }
+        WorkTree.each(loose.size(), i -> ObjectStore.writeBlob(loose.get(i),
+                Utils.join(Main.BLOBS_FOLDER, loose.get(i).shaName)));
+        imported += n;
+        names.clear();
+        contents.clear();
+        held = 0;
+
+        for (Pending p : commits) {
+            String parent = branches.getOrDefault(p.branch, branches.get(current));
+            Commit c = new Commit(p.message, parent, p.branch, p.date);
+            TreeMap<String, String> changes = new TreeMap<>();
+            for (String path : p.changes.keySet()) {
+                Integer i = p.changes.get(path);
+                changes.put(path, i == null ? null : blobs[i].shaName);
+            }
+            c.update(changes);
+            written.add(Utils.join(Main.COMMITS_FOLDER, c.shaName));
+            c.saveCommit();
+            ObjectCache.COMMITS.put(c.shaName, c);
+            branches.put(p.branch, c.shaName);
+            made.add(c);
+        }
+        commits.clear();
+    }
+
+    /** Returns the path named by the change LINE, which must stay inside
+     *  the working directory. */
+    private static String path(String line) {
+        String path = line.substring(2);
+        if (!Tree.isSafe(path)) {
+            throw Utils.error("Bad path: %s", path);
+        }
+        return path;
+    }
+
+    /** Returns the bytes of the data record whose first line is LINE. */
+    private byte[] readData(String line) throws IOException {
+        if (line == null || !line.startsWith("data ")) {
+            throw Utils.error("Expected data, got: %s", line);
+        }
+        int length;
+        try {
+            length = Integer.parseInt(line.substring("data ".length()));
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Bad data length: %s", line);
+        }
+        if (length < 0) {
+            throw Utils.error("Bad data length: %s", line);
+        }
+        byte[] data = new byte[length];
+        try {
+            in.readFully(data);
+        } catch (EOFException excp) {
+            throw Utils.error("Input ends inside data.");
+        }
+        in.mark(1);
+        if (in.read() != '\n') {
+            in.reset();
+        }
+        return data;
+    }
+
+    /** Returns the next line that is neither blank nor a comment, or
+     *  null at the end of the input. */
+    private String nextRecord() throws IOException {
+        String line = readLine();
+        while (line != null && (line.isEmpty() || line.startsWith("#"))) {
+            line = readLine();
+        }
+        return line;
+    }
+
+    /** Returns the next line of the input, without its newline, or null
+     *  at the end of the input. */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c = in.read();
+        if (c < 0) {
+            return null;
+        }
+        for (; c >= 0 && c != '\n'; c = in.read()) {
+            line.write(c);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /** A commit read but not yet made. */
+    private static class Pending {
+        /** A commit on BRANCH. */
+        Pending(String branch) {
+            this.branch = branch;
+        }
+
+        /** Branch, message and time of the commit. */
+        private final String branch;
+        private String message;
+        private Date date;
+        /** Each path changed, mapped to the number of its new contents
+         *  in the current batch, or to null if it is removed. */
+        private final TreeMap<String, Integer> changes = new TreeMap<>();
+    }
+
+    /** The input. */
+    private final DataInputStream in;
+    /** Head of each branch, as the import has left it so far. */
+    private final HashMap<String, String> branches = new HashMap<>();
+    /** Commits read since the last batch was written. */
+    private final List<Pending> commits = new ArrayList<>();
+    /** Paths and contents of the files read since the last batch was
+     *  written. */
+    private final List<String> names = new ArrayList<>();
+    private final List<byte[]> contents = new ArrayList<>();
+    /** Total length of CONTENTS. */
+    private long held;
+    /** Commits made so far. */
+    private final List<Commit> made = new ArrayList<>();
+    /** Ids of the commits read so far. */
+    private final HashSet<String> ids = new HashSet<>();
+    /** Time given to the last commit without a date, in milliseconds. */
+    private long undated;
+    /** Packs, loose blobs and commits written so far. */
+    private final List<File> written = new ArrayList<>();
+    /** Number of files imported so far. */
+    private int imported;
+}
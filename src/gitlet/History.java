@@ -0,0 +1,144 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** The commits log prints, found a commit at a time as they are asked
+ *  for: the first-parent history of one commit, newest first, less the
+ *  commits that another commit can reach, limited to those made within
+ *  a span of time and to those that change any of a list of paths, and
+ *  cut off after a number of commits.
+ *
+ *  The walk and its filters use only the CommitGraph and the trees of the
+ *  commits, so that no commit is read until it is returned, and none is
+ *  looked at after the last one asked for.  A commit changes a path if
+ *  the file or directory at the path in its tree differs from that in
+ *  the tree of its first parent, which is known from their ids without
+ *  reading the file.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class History implements Iterator<Commit> {
+
+    /** The history of commit FROM, less the commits commit EXCLUDE can
+     *  reach, or all of it if EXCLUDE is null. */
+    History(String from, String exclude) {
+        graph = CommitGraph.get();
+        next = graph.indexOf(from);
+        int stop = graph.indexOf(exclude);
+        if (stop != CommitGraph.NONE) {
+            excluded = new boolean[graph.size()];
+            markAncestors(stop);
+        }
+    }
+
+    /** Stops after LIMIT commits.  Returns this. */
+    History limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /** Keeps only commits made from SINCE to UNTIL, in milliseconds since
+     *  the epoch.  Returns this. */
+    History between(long since, long until) {
+        this.since = since;
+        this.until = until;
+        return this;
+    }
+
+    /** Keeps only commits that change any of PATHS.  Returns this. */
+    History touching(List<String> paths) {
+        this.paths = paths.isEmpty() ? null : paths;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (found || returned >= limit) {
+            return found;
+        }
+        while (next != CommitGraph.NONE && !found) {
+            int n = next;
+            next = graph.parent(n);
+            if (excluded != null && excluded[n]) {
+                next = CommitGraph.NONE; //so is every commit before it
+            } else {
+                long time = graph.time(n);
+                found = time >= since && time <= until && changes(n);
+                current = n;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Commit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        found = false;
+        returned += 1;
+        return Main.fromShaC(graph.id(current));
+    }
+
+    /** Returns true iff commit N changes one of the paths, or there are
+     *  none. */
+    private boolean changes(int n) {
+        if (paths == null) {
+            return true;
+        }
+        int p = graph.parent(n);
+        String tree = graph.tree(n);
+        String parentTree = p == CommitGraph.NONE ? null : graph.tree(p);
+        if (tree.equals(parentTree)) {
+            return false;
+        }
+        for (String path : paths) {
+            String entry = Tree.entry(tree, path);
+            String parentEntry = parentTree == null ? null : Tree.entry(parentTree, path);
+            if (entry == null ? parentEntry != null : !entry.equals(parentEntry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Marks commit N and all its ancestors as excluded. */
+    private void markAncestors(int n) {
+        int[] work = new int[16];
+        int top = 0;
+        work[top++] = n;
+        excluded[n] = true;
+        while (top > 0) {
+            int c = work[--top];
+            for (int k = 0; k < 2; k += 1) {
+                int p = k == 0 ? graph.parent(c) : graph.parent2(c);
+                if (p != CommitGraph.NONE && !excluded[p]) {
+                    excluded[p] = true;
+                    if (top == work.length) {
+                        work = Arrays.copyOf(work, 2 * top);
+                    }
+                    work[top++] = p;
+                }
+            }
+        }
+    }
+
+    /** The graph walked. */
+    private final CommitGraph graph;
+    /** The commit to look at next, or NONE at the end. */
+    private int next;
+    /** The commit found, if FOUND. */
+    private int current;
+    /** True iff CURRENT is to be returned next. */
+    private boolean found;
+    /** Commits that are not to be returned, or null for none. */
+    private boolean[] excluded;
+    /** Commits returned, and most to return. */
+    private int returned, limit = Integer.MAX_VALUE;
+    /** Span of time of the commits returned. */
+    private long since = Long.MIN_VALUE, until = Long.MAX_VALUE;
+    /** Paths that commits returned change, or null for any. */
+    private List<String> paths;
+}
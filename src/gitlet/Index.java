@@ -0,0 +1,227 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/** A cache of the blob ids of working files, kept in .gitlet/.index so
+ *  that finding out whether a file has changed seldom means reading it.
+ *  For each file it has hashed, the index holds the file's size,
+ *  modification time and inode as they were when it was hashed, and the
+ *  blob id it got.  While all three still match, the file is taken to be
+ *  unchanged.
+ *
+ *  A file modified within the resolution of the clock after it was hashed
+ *  can keep its size and time, so an entry whose time is not earlier than
+ *  the time the index was written is "racy" and its file is hashed again.
+ *
+ *  Files may be hashed from several threads at once; only the entries
+ *  themselves are locked, never the reading of a file.
+ *
+ *  The file is MAGIC, VERSION and an entry count, then, sorted by path,
+ *  each path followed by the size, time in nanoseconds and inode as longs
+ *  and the 20 bytes of the blob id.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Index {
+
+    /** Magic number at the start of the file. */
+    private static final int MAGIC = 0x47494458;
+    /** Current version of the format. */
+    private static final int VERSION = 1;
+
+    /** The index of this repository, loaded on first use. */
+    private static Index index;
+
+    /** What is known of one working file. */
+    private static class Entry {
+        /** Size, modification time in nanoseconds and inode of the file
+         *  when it was hashed; the inode is 0 where the platform has
+         *  none. */
+        long size, time, inode;
+        /** Blob id of the file's contents at that time. */
+        String sha;
+    }
+
+    /** Entries by path. */
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    /** Time the index file was last written, in nanoseconds. */
+    private long written = Long.MIN_VALUE;
+    /** True iff the entries differ from those in the file. */
+    private boolean dirty;
+
+    /** Returns the index of this repository, reading it from disk if need
+     *  be. */
+    static synchronized Index get() {
+        if (index == null) {
+            index = new Index();
+            if (Main.INDEX.exists()) {
+                index.read(Utils.readContents(Main.INDEX));
+                index.written = stat(Main.INDEX)[1];
+            }
+        }
+        return index;
+    }
+
+    /** Writes the index back to disk if it has been loaded and has
+     *  changed. */
+    static void save() {
+        if (index != null && index.dirty) {
+            index.write();
+        }
+    }
+
+    /** Forgets the loaded index, so the next get() reads it again. */
+    static void reset() {
+        index = null;
+    }
+
+    /** Returns the blob id of the working file PATH as it is now, or null
+     *  if there is no such file.  The file is read only if its entry is
+     *  missing, racy, or does not match the file. */
+    String hash(String path) {
+        File f = new File(path);
+        long[] st = stat(f);
+        if (st == null) {
+            remove(path);
+            return null;
+        }
+        Entry e;
+        synchronized (this) {
+            e = entries.get(path);
+        }
+        if (e != null && e.size == st[0] && e.time == st[1]
+                && e.inode == st[2] && e.time < written) {
+            return e.sha;
+        }
+        String sha = ObjectStore.hash(f, path);
+        put(path, st, sha);
+        return sha;
+    }
+
+    /** Returns true iff the working file PATH exists and its contents are
+     *  the blob SHA. */
+    boolean matches(String path, String sha) {
+        return sha != null && sha.equals(hash(path));
+    }
+
+    /** Records that the working file PATH, which has just been written,
+     *  holds the blob SHA. */
+    synchronized void update(String path, String sha) {
+        long[] st = stat(new File(path));
+        if (st == null) {
+            remove(path);
+        } else {
+            put(path, st, sha);
+        }
+    }
+
+    /** Forgets the working file PATH. */
+    synchronized void remove(String path) {
+        if (entries.remove(path) != null) {
+            dirty = true;
+        }
+    }
+
+    /** Records that the file PATH with stat ST holds the blob SHA. */
+    private synchronized void put(String path, long[] st, String sha) {
+        Entry e = new Entry();
+        e.size = st[0];
+        e.time = st[1];
+        e.inode = st[2];
+        e.sha = sha;
+        entries.put(path, e);
+        dirty = true;
+    }
+
+    /** Returns the size, modification time in nanoseconds and inode of
+     *  F, or null if F is not a plain file. */
+    private static long[] stat(File f) {
+        Path p = f.toPath();
+        try {
+            Map<String, Object> attrs;
+            long inode = 0;
+            try {
+                attrs = Files.readAttributes(p, "unix:size,lastModifiedTime,ino");
+                inode = (Long) attrs.get("ino");
+            } catch (UnsupportedOperationException excp) {
+                attrs = Files.readAttributes(p, "size,lastModifiedTime");
+            }
+            if (!Files.isRegularFile(p)) {
+                return null;
+            }
+            long time = ((FileTime) attrs.get("lastModifiedTime"))
+                    .to(TimeUnit.NANOSECONDS);
+            return new long[] {(Long) attrs.get("size"), time, inode};
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Loads the entries in DATA, the contents of the index file.  An
+     *  index that cannot be read is treated as empty, since it only ever
+     *  saves work. */
+    private void read(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return;
+            }
+            byte[] id = new byte[Utils.UID_LENGTH / 2];
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String path = Codec.readString(in);
+                Entry e = new Entry();
+                e.size = in.readLong();
+                e.time = in.readLong();
+                e.inode = in.readLong();
+                in.readFully(id);
+                e.sha = Pack.toHex(id, 0);
+                entries.put(path, e);
+            }
+        } catch (IOException excp) {
+            entries.clear();
+        }
+    }
+
+    /** Writes the entries to the index file, replacing it only once the
+     *  new one is complete. */
+    private void write() {
+        File tmp;
+        try {
+            //commands that only read may write the index at the same time
+            tmp = File.createTempFile(".index", ".tmp", Main.GITLET_FOLDER);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> me : entries.entrySet()) {
+                Entry e = me.getValue();
+                Codec.writeString(out, me.getKey());
+                out.writeLong(e.size);
+                out.writeLong(e.time);
+                out.writeLong(e.inode);
+                out.write(Pack.toBytes(e.sha));
+            }
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ObjectStore.move(tmp, Main.INDEX);
+        written = stat(Main.INDEX)[1];
+        dirty = false;
+    }
+}
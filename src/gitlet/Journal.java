@@ -0,0 +1,378 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/** Makes the changes a command makes to the refs and staging area of a
+ *  repository happen all at once or not at all.
+ *
+ *  While a command runs, its writes to those files, its appends to the
+ *  commit log and the staging log and its moves of blobs staged by older
+ *  versions into .gitlet/.blobs are only recorded, and reads of those
+ *  files see the recorded writes and appends.  Objects (commits, trees and
+ *  blobs) are written straight away, since nothing refers to them until
+ *  the command's changes take effect; they are only noted, so they can be
+ *  made durable later.  When the command finishes, commit() writes every
+ *  recorded change to the journal, .gitlet/.journal, and then carries
+ *  the changes out.  The journal appears, by a rename, only once it and
+ *  every object noted are on disk, so it is the point at which the
+ *  command takes effect.  If Gitlet stops partway through carrying out
+ *  a journal, the next command carries it out again on startup.
+ *
+ *  The journal is left in place until the next command replaces it.
+ *  The files it changed are forced to disk together with the next
+ *  command's objects and journal, so each command that changes anything
+ *  costs one batch of fsyncs, issued in parallel, plus one more for the
+ *  rename of the journal.
+ *
+ *  The journal is MAGIC, VERSION and a count of operations, then each
+ *  operation: WRITE, a path and the length and bytes of the file's new
+ *  contents; APPEND, a path, the length of the file before the append and
+ *  the length and bytes appended; or MOVE and two paths.  Version 1 has
+ *  no APPEND.  It ends with the CRC-32 of all that
+ *  came before.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Journal {
+
+    /** Magic number at the start of the journal. */
+    private static final int MAGIC = 0x474a4e4c;
+    /** Current version of the format. */
+    private static final int VERSION = 2;
+    /** Operation types. */
+    private static final int WRITE = 1, MOVE = 2, APPEND = 3;
+
+    /** The journal file, and the file it is written to first. */
+    private static final File JOURNAL = Utils.join(Main.GITLET_FOLDER, ".journal");
+    private static final File JOURNAL_TMP = Utils.join(Main.GITLET_FOLDER, ".journal.tmp");
+
+    /** New contents of files written by this command, by path. */
+    private static final LinkedHashMap<String, byte[]> WRITES = new LinkedHashMap<>();
+    /** Bytes appended by this command, by path. */
+    private static final LinkedHashMap<String, Appended> APPENDS = new LinkedHashMap<>();
+    /** Moves made by this command, as source and destination paths. */
+    private static final LinkedHashMap<String, String> MOVES = new LinkedHashMap<>();
+    /** Objects written by this command, to be forced to disk. */
+    private static final LinkedHashSet<File> OBJECTS = new LinkedHashSet<>();
+    /** Files changed by the journal now on disk, not yet known to be
+     *  durable. */
+    private static final LinkedHashSet<File> APPLIED = new LinkedHashSet<>();
+
+    /** Carries out the journal left by the last command, if there is
+     *  one.  Changes that were already made are not made again. */
+    static void recover() {
+        JOURNAL_TMP.delete();
+        if (!JOURNAL.exists()) {
+            return;
+        }
+        LinkedHashMap<String, byte[]> writes = new LinkedHashMap<>();
+        LinkedHashMap<String, Appended> appends = new LinkedHashMap<>();
+        LinkedHashMap<String, String> moves = new LinkedHashMap<>();
+        if (!parse(Utils.readContents(JOURNAL), writes, appends, moves)) {
+            //never renamed into place unless complete, so not a journal
+            JOURNAL.delete();
+            return;
+        }
+        for (Map.Entry<String, byte[]> e : writes.entrySet()) {
+            File f = new File(e.getKey());
+            if (!f.exists() || !Arrays.equals(Utils.readContents(f), e.getValue())) {
+                replace(f, e.getValue());
+            }
+            APPLIED.add(f);
+        }
+        for (Map.Entry<String, Appended> e : appends.entrySet()) {
+            File f = new File(e.getKey());
+            append(f, e.getValue());
+            APPLIED.add(f);
+        }
+        for (Map.Entry<String, String> e : moves.entrySet()) {
+            File src = new File(e.getKey());
+            File dest = new File(e.getValue());
+            if (src.exists()) {
+                ObjectStore.move(src, dest);
+            }
+            APPLIED.add(dest);
+        }
+    }
+
+    /** Returns the contents of F as this command has left it. */
+    static byte[] read(File f) {
+        byte[] written = WRITES.get(f.getPath());
+        Appended a = APPENDS.get(f.getPath());
+        if (a == null) {
+            return written != null ? written : Utils.readContents(f);
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.writeBytes(written != null ? written : Utils.readContents(f));
+        result.writeBytes(a.data.toByteArray());
+        return result.toByteArray();
+    }
+
+    /** Returns true iff F exists as this command has left it. */
+    static boolean exists(File f) {
+        return WRITES.containsKey(f.getPath()) || f.exists();
+    }
+
+    /** Returns the contents of F as this command has left it, as a
+     *  string. */
+    static String readString(File f) {
+        return new String(read(f), StandardCharsets.UTF_8);
+    }
+
+    /** Returns the object of type EXPECTEDCLASS serialized in F as this
+     *  command has left it. */
+    static <T extends Serializable> T readObject(File f, Class<T> expectedClass) {
+        byte[] data = read(f);
+        long start = Trace.start();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            T result = expectedClass.cast(in.readObject());
+            Trace.DECODE.add(start, data.length);
+            return result;
+        } catch (IOException | ClassCastException | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Records that F is to hold DATA, in place of anything appended to
+     *  it so far. */
+    static void write(File f, byte[] data) {
+        WRITES.put(f.getPath(), data);
+        APPENDS.remove(f.getPath());
+    }
+
+    /** Records that F is to hold the string S. */
+    static void writeString(File f, String s) {
+        write(f, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Records that F is to hold OBJ, serialized. */
+    static void writeObject(File f, Serializable obj) {
+        write(f, Utils.serialize(obj));
+    }
+
+    /** Records that DATA is to be added to the end of F, which only grows
+     *  unless it is written whole.  Appends to a file written by this
+     *  command follow the written contents. */
+    static void append(File f, byte[] data) {
+        Appended a = APPENDS.get(f.getPath());
+        if (a == null) {
+            byte[] written = WRITES.get(f.getPath());
+            a = new Appended(written != null ? written.length : f.length());
+            APPENDS.put(f.getPath(), a);
+        }
+        a.data.write(data, 0, data.length);
+    }
+
+    /** Records that the object file SRC is to be moved to DEST. */
+    static void move(File src, File dest) {
+        MOVES.put(src.getPath(), dest.getPath());
+    }
+
+    /** Notes that the object file F has just been written, so that it
+     *  reaches the disk before the journal that may refer to it. */
+    static synchronized void wrote(File f) {
+        OBJECTS.add(f);
+    }
+
+    /** Makes the changes recorded by this command take effect, if there
+     *  are any. */
+    static void commit() {
+        if (WRITES.isEmpty() && APPENDS.isEmpty() && MOVES.isEmpty()) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(JOURNAL_TMP)))) {
+            out.write(encode(WRITES, APPENDS, MOVES));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+
+        LinkedHashSet<File> durable = new LinkedHashSet<>(OBJECTS);
+        durable.addAll(APPLIED);
+        durable.add(JOURNAL_TMP);
+        LinkedHashSet<File> dirs = new LinkedHashSet<>();
+        for (File f : durable) {
+            dirs.add(f.getAbsoluteFile().getParentFile());
+        }
+        durable.addAll(dirs);
+        force(new ArrayList<>(durable));
+        ObjectStore.move(JOURNAL_TMP, JOURNAL);
+        force(List.of(Main.GITLET_FOLDER)); //the rename itself
+
+        for (Map.Entry<String, byte[]> e : WRITES.entrySet()) {
+            replace(new File(e.getKey()), e.getValue());
+        }
+        for (Map.Entry<String, Appended> e : APPENDS.entrySet()) {
+            append(new File(e.getKey()), e.getValue());
+        }
+        for (Map.Entry<String, String> e : MOVES.entrySet()) {
+            ObjectStore.move(new File(e.getKey()), new File(e.getValue()));
+        }
+        discard();
+        APPLIED.clear();
+    }
+
+    /** Forgets the changes recorded by this command, which did not
+     *  finish.  Objects it wrote are left, unreferenced. */
+    static void discard() {
+        WRITES.clear();
+        APPENDS.clear();
+        MOVES.clear();
+        OBJECTS.clear();
+    }
+
+    /** Replaces the contents of F with DATA by writing a new file and
+     *  renaming it over F. */
+    private static void replace(File f, byte[] data) {
+        File tmp = new File(f.getPath() + ".tmp");
+        Utils.writeContents(tmp, data);
+        ObjectStore.move(tmp, f);
+    }
+
+    /** Carries out the append A to F, unless F already holds it.  Whatever
+     *  follows it in F, which only an append cut short can have left, is
+     *  cut off. */
+    private static void append(File f, Appended a) {
+        byte[] data = a.data.toByteArray();
+        try (RandomAccessFile out = new RandomAccessFile(f, "rw")) {
+            if (out.length() >= a.offset + data.length) {
+                byte[] old = new byte[data.length];
+                out.seek(a.offset);
+                out.readFully(old);
+                if (Arrays.equals(old, data)) {
+                    return;
+                }
+            }
+            out.seek(a.offset);
+            out.write(data);
+            out.setLength(a.offset + data.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Forces FILES, which may include directories, to disk in
+     *  parallel.  A file that no longer exists is skipped, and so is a
+     *  directory on a platform that cannot force one. */
+    static void force(List<File> files) {
+        WorkTree.each(files.size(), i -> {
+            File f = files.get(i);
+            if (!f.exists()) {
+                return;
+            }
+            long start = Trace.start();
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                ch.force(true);
+                Trace.SYNC.add(start, 0);
+            } catch (IOException excp) {
+                if (!f.isDirectory()) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        });
+    }
+
+    /** Returns the journal holding WRITES, APPENDS and MOVES. */
+    private static byte[] encode(Map<String, byte[]> writes, Map<String, Appended> appends,
+                                 Map<String, String> moves) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(writes.size() + appends.size() + moves.size());
+        for (Map.Entry<String, byte[]> e : writes.entrySet()) {
+            out.writeByte(WRITE);
+            Codec.writeString(out, e.getKey());
+            out.writeInt(e.getValue().length);
+            out.write(e.getValue());
+        }
+        for (Map.Entry<String, Appended> e : appends.entrySet()) {
+            out.writeByte(APPEND);
+            Codec.writeString(out, e.getKey());
+            out.writeLong(e.getValue().offset);
+            out.writeInt(e.getValue().data.size());
+            e.getValue().data.writeTo(out);
+        }
+        for (Map.Entry<String, String> e : moves.entrySet()) {
+            out.writeByte(MOVE);
+            Codec.writeString(out, e.getKey());
+            Codec.writeString(out, e.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /** Reads the journal DATA into WRITES, APPENDS and MOVES.  Returns
+     *  false if DATA is not a whole journal. */
+    private static boolean parse(byte[] data, Map<String, byte[]> writes,
+                                 Map<String, Appended> appends, Map<String, String> moves) {
+        if (data.length < 8) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 8);
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != MAGIC || in.readByte() > VERSION) {
+                return false;
+            }
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                int type = in.readByte();
+                String path = Codec.readString(in);
+                if (type == WRITE) {
+                    byte[] contents = new byte[in.readInt()];
+                    in.readFully(contents);
+                    writes.put(path, contents);
+                } else if (type == APPEND) {
+                    Appended a = new Appended(in.readLong());
+                    byte[] contents = new byte[in.readInt()];
+                    in.readFully(contents);
+                    a.data.write(contents);
+                    appends.put(path, a);
+                } else if (type == MOVE) {
+                    moves.put(path, Codec.readString(in));
+                } else {
+                    return false;
+                }
+            }
+            return in.readLong() == crc.getValue();
+        } catch (IOException | NegativeArraySizeException excp) {
+            return false;
+        }
+    }
+
+    /** Bytes to be appended to a file. */
+    private static class Appended {
+        /** Bytes to be appended to a file OFFSET bytes long. */
+        Appended(long offset) {
+            this.offset = offset;
+        }
+
+        /** Length of the file before the append. */
+        final long offset;
+        /** The bytes appended. */
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    }
+}
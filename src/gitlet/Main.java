@@ -1,7 +1,16 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
@@ -11,89 +20,143 @@ public class Main {
 
     /** Main metadata folder. */
     static final File GITLET_FOLDER = new File(".gitlet");
-    static final File STAGING_FOLDER = Utils.join(GITLET_FOLDER, ".staging");
-    static final File ADD_STAGE = Utils.join(GITLET_FOLDER, ".add");
-    static final File RM_STAGE = Utils.join(GITLET_FOLDER, ".rm");
+    static final File STAGING_FOLDER = Utils.join(GITLET_FOLDER, ".staging"); //replaced by Stage
+    static final File ADD_STAGE = Utils.join(GITLET_FOLDER, ".add"); //replaced by Stage
+    static final File RM_STAGE = Utils.join(GITLET_FOLDER, ".rm"); //replaced by Stage
     static final File COMMITS_FOLDER = Utils.join(GITLET_FOLDER, ".commits");
     static final File BLOBS_FOLDER = Utils.join(GITLET_FOLDER, ".blobs");
+    static final File TREES_FOLDER = Utils.join(GITLET_FOLDER, ".trees");
+    static final File PACKS_FOLDER = Utils.join(GITLET_FOLDER, ".packs");
+    static final File CHUNKS_FOLDER = Utils.join(GITLET_FOLDER, ".chunks");
+    static final File CONFIG = Utils.join(GITLET_FOLDER, ".config");
+    static final File COMMIT_GRAPH = Utils.join(GITLET_FOLDER, ".commitgraph");
+    static final File INDEX = Utils.join(GITLET_FOLDER, ".index");
 
     static File HEAD = Utils.join(GITLET_FOLDER, ".head"); //shaName of the head commit
     static File MASTER = Utils.join(GITLET_FOLDER, ".master"); //holds head of the master branch
 
-    static final File ALL_COMMITS = Utils.join(GITLET_FOLDER, ".allcommits");
+    static final File ALL_COMMITS = Utils.join(GITLET_FOLDER, ".allcommits"); //replaced by CommitLog
     static final File ALL_BRANCHES = Utils.join(GITLET_FOLDER, ".branches");
     static final File CURR_BRANCH = Utils.join(GITLET_FOLDER, ".branch");
 
+    /** Commands that change nothing in .gitlet but the index cache. */
+    static final Set<String> READ_ONLY = Set.of("log", "global-log", "find", "status");
+
 
 
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) throws IOException {
+        if (Daemon.forward(args)) {
+            return; //a daemon serving this repository ran the command
+        }
+        try {
+            execute(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        }
+    }
+
+    //runs one command, for main or for the daemon; failures are thrown as GitletExceptions
+    static void execute(String... args) throws IOException {
+        args = Trace.begin(args); //a leading --trace asks for a report on where the time went
+        try {
+            command(args);
+        } finally {
+            Trace.end(args);
+        }
+    }
+
+    //runs one command, taking the repository lock if it changes anything
+    @SuppressWarnings("try") //the lock is held for the body of its try, never referenced
+    private static void command(String... args) throws IOException {
         if (args.length == 0) {
-            System.out.println("Please enter a command.");
-            System.exit(0);
+            throw Utils.error("Please enter a command.");
         } else if (!GITLET_FOLDER.exists() && !args[0].equals("init")) {
-            System.out.println("Not in an initialized Gitlet directory.");
-            System.exit(0);
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        if (args[0].equals("daemon")) {
+            if (args.length != 1 && !(args.length == 2 && args[1].equals("stop"))) {
+                throw Utils.error("Incorrect operands.");
+            } else if (args.length == 2) {
+                throw Utils.error("No daemon is running.");
+            }
+            Daemon.serve(); //runs until stopped
+            return;
+        }
+        if (!args[0].equals("config")) {
+            ObjectCache.configure(); //not for config, which may be mending a bad size
+        }
+        try {
+            if (!GITLET_FOLDER.exists() || READ_ONLY.contains(args[0])) {
+                run(args); //readers see only whole files and immutable objects, so take no lock
+                Journal.commit();
+            } else {
+                try (RepoLock lock = RepoLock.acquire()) { //one writer at a time
+                    Journal.recover(); //finishes the last command's changes if it was cut short
+                    run(args);
+                    Journal.commit(); //makes this command's changes take effect at once
+                }
+            }
+        } finally {
+            Journal.discard(); //drops the changes of a command that failed
+        }
+        Index.save(); //keeps the hashes of working files learned by this command
+        if (Config.isSet(Config.CACHE_STATS)) {
+            System.out.println(ObjectCache.COMMITS);
+            System.out.println(ObjectCache.TREES);
+            System.out.println(ObjectCache.BLOBS);
         }
+    }
+
+    //runs the command named by args[0]
+    private static void run(String... args) throws IOException {
         switch (args[0]) {
             case "init":
                 if (args.length != 1) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitinit();
                 break;
             case "add":
                 if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitadd(args[1]);
                 break;
             case "commit":
                 if (args.length == 1) {
-                    System.out.println("Please enter a commit message.");
-                    System.exit(0);
+                    throw Utils.error("Please enter a commit message.");
                 } else if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitcommit(args[1]);
                 break;
             case "rm":
                 if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitrm(args[1]);
                 break;
             case "log":
-                if (args.length != 1) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
-                }
-                gitlog();
+                gitlog(args);
                 break;
             case "global-log":
                 if (args.length != 1) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitgloballog();
                 break;
             case "find":
                 if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitfind(args[1]);
                 break;
             case "status":
                 if (args.length != 1) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitstatus();
                 break;
@@ -102,32 +165,53 @@ public class Main {
                 break;
             case "branch":
                 if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitbranch(args[1]);
                 break;
             case "rm-branch":
                 if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 rmBranch(args[1]);
                 break;
             case "reset":
                 if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitreset(args[1]);
                 break;
             case "merge":
                 if (args.length != 2) {
-                    System.out.println("Incorrect operands.");
-                    System.exit(0);
+                    throw Utils.error("Incorrect operands.");
                 }
                 gitmerge(args[1]);
                 break;
+            case "gc":
+            case "repack":
+                if (args.length != 1) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                gitgc();
+                break;
+            case "config":
+                if (args.length != 2 && args.length != 3) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                gitconfig(args);
+                break;
+            case "migrate":
+                if (args.length != 1) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                gitmigrate();
+                break;
+            case "fast-import":
+                if (args.length != 1) {
+                    throw Utils.error("Incorrect operands.");
+                }
+                FastImport.run(System.in);
+                break;
             case "rebase":
                 System.out.println("Rebase not implemented.");
                 break;
@@ -140,210 +224,290 @@ public class Main {
         //Creates a new Gitlet version-control system in the current directory.
         //This system will automatically start with one empty commit
         if (GITLET_FOLDER.exists()) {
-            System.out.println("A Gitlet version-control system already exists in the current directory.");
-            System.exit(0);
+            throw Utils.error("A Gitlet version-control system already exists in the current directory.");
         } else {
             GITLET_FOLDER.mkdir();
-            STAGING_FOLDER.mkdir();
             COMMITS_FOLDER.mkdir();
             BLOBS_FOLDER.mkdir();
+            TREES_FOLDER.mkdir();
+            PACKS_FOLDER.mkdir();
+            CHUNKS_FOLDER.mkdir();
             Commit init = new Commit();
-            HEAD.createNewFile();
-            Utils.writeContents(HEAD, init.shaName); //saving shaname in head file
-            MASTER.createNewFile();
-            Utils.writeContents(MASTER, init.shaName); //saving shaname in master head branch
+            Journal.writeString(HEAD, init.shaName); //saving shaname in head file
+            Journal.writeString(MASTER, init.shaName); //saving shaname in master head branch
             init.saveCommit();
-            ADD_STAGE.createNewFile(); //file will contain array of blob shanames
-            RM_STAGE.createNewFile();
-            HashMap addstage = new HashMap();
-            HashMap rmstage = new HashMap();
-            Utils.writeObject(ADD_STAGE, addstage);
-            Utils.writeObject(RM_STAGE, rmstage);
-            ALL_COMMITS.createNewFile();
-            HashMap allcommits = new HashMap();
-            allcommits.put(init.shaName, init.message);
-            Utils.writeObject(ALL_COMMITS, allcommits);
-            ALL_BRANCHES.createNewFile();
+            Stage.clear(); //starts an empty staging log
+            CommitLog.create(init); //starts the log of every commit
             HashMap allbranches = new HashMap();
             allbranches.put(init.branch, init.shaName);
-            Utils.writeObject(ALL_BRANCHES, allbranches);
-            CURR_BRANCH.createNewFile();
-            Utils.writeContents(CURR_BRANCH, init.branch);
+            Journal.writeObject(ALL_BRANCHES, allbranches);
+            Journal.writeString(CURR_BRANCH, init.branch);
+            //the commit graph is started by the first command to take the lock
         }
     }
 
     public static void gitadd(String fileName) throws IOException {
-        //Stages the file for addition
-        Blob adding = new Blob(fileName);
-        if (!adding.cwdfile.exists()) {
-            System.out.println("File does not exist.");
-            System.exit(0);
-        }
-        File f = Utils.join(STAGING_FOLDER, adding.shaName); //points to the file inside the staging directory
-        HashMap addstage = Utils.readObject(ADD_STAGE, HashMap.class);
-        HashMap rmstage = Utils.readObject(RM_STAGE, HashMap.class);
-        Commit head = fromShaC(Utils.readContentsAsString(HEAD));
-
-        if (rmstage.containsKey(fileName)) {
-            rmstage.remove(fileName); //if staged for removal, sike
-            Utils.writeObject(RM_STAGE, rmstage);
+        //Stages the file for addition; a directory (such as ".") stages every file under it
+        File target = new File(fileName);
+        if (!target.exists()) {
+            throw Utils.error("File does not exist.");
+        }
+        Commit head = fromShaC(Journal.readString(HEAD));
+        if (!target.isDirectory()) { //one record appended, without reading the staging log
+            String name = relativePath(fileName);
+            String sha = new Blob(name).shaName;
+            if (sha.equals(head.blob(name))) { //if file is already tracked w/ same content
+                Stage.unstage(name); //no longer staged for addition or removal
+            } else {
+                Stage.add(name, saveStaged(name, sha));
+            }
             return;
         }
 
-        if (head.blobs.containsValue(adding.shaName)) { //if file is already tracked w/ same content
-            return;
+        Stage stage = Stage.read();
+        Map<String, String> addstage = stage.added();
+        Map<String, String> rmstage = stage.removed();
+        String dir = relativePath(fileName);
+        TreeMap<String, String> hashes = WorkTree.hash(WorkTree.files(dir)); //walks and hashes in parallel
+        String prefix = dir.isEmpty() ? "" : dir + "/";
+        for (String tracked : head.files().keySet()) {
+            if (tracked.startsWith(prefix) && !hashes.containsKey(tracked)
+                    && !rmstage.containsKey(tracked)) {
+                Stage.remove(tracked, head.blob(tracked)); //deleted from the directory
+            }
         }
-
-        if (addstage.containsKey(fileName)) {
-            if (addstage.containsValue(adding.shaName)) { //if already added identical file w/ same content
-                return;
-            } else {
-                File j = Utils.join(STAGING_FOLDER, (String) addstage.get(fileName));
-                j.delete(); //deletes if already staged for addition, rewrites w new content later
-                addstage.remove(fileName); //adds back later, don't want doubles
+        List<String> saving = new ArrayList<>(); //files whose contents must be stored
+        for (Map.Entry<String, String> e : hashes.entrySet()) {
+            String name = e.getKey();
+            String sha = e.getValue();
+            if (sha.equals(head.blob(name))) {
+                if (addstage.containsKey(name) || rmstage.containsKey(name)) {
+                    Stage.unstage(name);
+                }
+            } else if (!sha.equals(addstage.get(name))) { //unless already added w/ same content
+                saving.add(name);
             }
         }
-        f.createNewFile(); //creates empty file named after shaName in staging directory
-        Utils.writeObject(f, adding); //adds contents of the file thru blob
-        addstage.put(fileName, adding.shaName); //file listed to be added
-        Utils.writeObject(ADD_STAGE, addstage);
+        String[] stored = new String[saving.size()];
+        WorkTree.each(saving.size(), i -> stored[i] =
+            saveStaged(saving.get(i), hashes.get(saving.get(i))));
+        for (int i = 0; i < stored.length; i += 1) {
+            Stage.add(saving.get(i), stored[i]);
+        }
+    }
+
+    //streams the contents of working file name, hashed as sha, into the blob store unless that
+    //blob is already there; returns the id of what was stored, which differs from sha if the
+    //file changed after it was hashed
+    private static String saveStaged(String name, String sha) {
+        if (Utils.join(BLOBS_FOLDER, sha).exists() || Pack.contains(sha)) {
+            return sha;
+        }
+        return ObjectStore.storeBlob(new File(name), name); //forced to disk with the command
+    }
+
+    //turns a path typed by the user into the form files are tracked under: relative, '/'-separated
+    public static String relativePath(String path) {
+        String p = path.replace(File.separatorChar, '/');
+        while (p.startsWith("./")) {
+            p = p.substring(2);
+        }
+        while (p.endsWith("/")) {
+            p = p.substring(0, p.length() - 1);
+        }
+        return p.equals(".") ? "" : p;
     }
 
     public static void gitcommit(String message) throws IOException {
+        gitcommit(message, null);
+    }
+
+    //commits the staging area; parent2 is the merged-in commit, if any
+    public static void gitcommit(String message, String parent2) throws IOException {
         if (message.equals("")) {
-            System.out.println("Please enter a commit message.");
-            System.exit(0);
+            throw Utils.error("Please enter a commit message.");
         }
-        Commit parent = fromShaC(Utils.readContentsAsString(HEAD)); //current head is parent commit
-        String branch = Utils.readContentsAsString(CURR_BRANCH);
+        Commit parent = fromShaC(Journal.readString(HEAD)); //current head is parent commit
+        String branch = Journal.readString(CURR_BRANCH);
         Commit current = new Commit(message, parent.shaName, branch);
-        HashMap allcommits = Utils.readObject(ALL_COMMITS, HashMap.class);
-        HashMap addstage = Utils.readObject(ADD_STAGE, HashMap.class);
-        HashMap rmstage = Utils.readObject(RM_STAGE, HashMap.class);
-        if (addstage.isEmpty()) {
-            if (rmstage.isEmpty()) {
-                System.out.println("No changes added to the commit.");
-                System.exit(0);
-            }
+        Stage stage = Stage.read(); //folds the staging log
+        if (stage.isEmpty()) {
+            throw Utils.error("No changes added to the commit.");
         }
 
-        current.blobs.putAll(addstage);//adding blobs from staging area to current commit
-
-        for (Object s : rmstage.keySet()) {
-            current.blobs.remove(s); //removing blobs from current commit
+        TreeMap<String, String> changes = new TreeMap<>(stage.added()); //adding blobs from staging area
+        for (String s : stage.removed().keySet()) {
+            changes.put(s, null); //removing blobs from current commit
         }
+        current.update(changes); //rewrites only the trees along changed paths
 
-        Utils.writeContents(HEAD, current.shaName); //changing head
+        current.parent2 = parent2;
+        Journal.writeString(HEAD, current.shaName); //changing head
         current.saveCommit(); //saving commit
+        CommitGraph.get().add(current); //records the new commit's place in history
 
-        for (Object s : current.blobs.keySet()) {
-            String blobsha = current.blobs.get(s); //gets shaName from blob
-            File f = Utils.join(STAGING_FOLDER, blobsha); //file in staging directory
+        for (String blobsha : stage.added().values()) {
+            File f = Utils.join(STAGING_FOLDER, blobsha); //staged by an older version, before the staging log
             if (f.exists()) {
-                Blob blobby = fromShaBStage(blobsha); //reconstructs the staged blob from shaName
-                blobby.saveBlob(); //saves blobs to blobs_folder after making changes
-                f.delete(); //removes file from staging directory
+                Journal.move(f, Utils.join(BLOBS_FOLDER, blobsha)); //staged blob is already in final form
             }
         }
 
-        allcommits.put(current.shaName, current.message);
-        Utils.writeObject(ALL_COMMITS, allcommits);
-        Utils.writeObject(ADD_STAGE, new HashMap()); //clears add/remove stage files
-        Utils.writeObject(RM_STAGE, new HashMap());
+        CommitLog.add(current); //appended when the journal is carried out
+        Stage.clear(); //empties the staging log
 
         //need to change current branch's head every time u commit
-        HashMap allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
+        HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
         allbranches.replace(current.branch, current.shaName);
-        Utils.writeObject(ALL_BRANCHES, allbranches);
+        Journal.writeObject(ALL_BRANCHES, allbranches);
     }
 
-    //reconstructs Commit from its shaName
+    //reconstructs Commit from its shaName; commits never change, so recent ones are cached
     public static Commit fromShaC(String sha) {
-        File f = Utils.join(COMMITS_FOLDER, sha);
-        return Utils.readObject(f, Commit.class);
+        return ObjectCache.COMMITS.get(sha,
+            s -> Codec.readCommit(Utils.join(COMMITS_FOLDER, s)));
     }
 
-    //reconstructs tracked Blob from its shaName
+    //reconstructs tracked Blob from its shaName, loose or packed; recent ones are cached
     public static Blob fromShaB(String sha) {
-        File f = Utils.join(BLOBS_FOLDER, sha);
-        return Utils.readObject(f, Blob.class);
+        return ObjectCache.BLOBS.get(sha, Main::readBlob);
     }
 
-    //reconstructs staged Blob from its shaName
-    public static Blob fromShaBStage(String sha) {
-        File f = Utils.join(STAGING_FOLDER, sha);
-        return Utils.readObject(f, Blob.class);
+    //reads tracked Blob from disk
+    private static Blob readBlob(String sha) {
+        File f = Utils.join(BLOBS_FOLDER, sha);
+        if (f.exists()) {
+            return ObjectStore.readBlob(f);
+        }
+        Blob packed = Pack.find(sha);
+        if (packed == null) {
+            throw Utils.error("Missing blob %s.", sha);
+        }
+        return packed;
     }
 
     public static void gitrm(String fileName) {
         Blob removing = new Blob(fileName);
-        Commit head = fromShaC(Utils.readContentsAsString(HEAD));
+        Commit head = fromShaC(Journal.readString(HEAD));
         File f = new File(fileName); //points to file in cwd
-        HashMap addstage = Utils.readObject(ADD_STAGE, HashMap.class);
-        HashMap rmstage = Utils.readObject(RM_STAGE, HashMap.class);
+        Stage stage = Stage.read();
 
-        if (head.blobs.containsKey(fileName) && !f.exists()) { //if manually deleted but tracked in commit
-            rmstage.put(fileName, head.blobs.get(fileName)); //stage for removal
-            Utils.writeObject(RM_STAGE, rmstage);
-            System.exit(0);
+        if (head.blob(fileName) != null && !f.exists()) { //if manually deleted but tracked in commit
+            Stage.remove(fileName, head.blob(fileName)); //stage for removal
+            return;
         }
 
-        File g = Utils.join(STAGING_FOLDER, removing.shaName); //if the file is staged
-        if (!g.exists() && !head.blobs.containsValue(removing.shaName)) {
+        boolean staged = stage.added().containsKey(fileName); //if the file is staged
+        boolean tracked = head.blob(fileName) != null && head.blob(fileName).equals(removing.shaName);
+        if (!staged && !tracked) {
             System.out.println("No reason to remove the file.");
         }
 
-        if (addstage.containsKey(fileName)) {
-            g.delete(); //if file is staged for addition, unstage it
-            addstage.remove(fileName);
-        }
-
-        if (head.blobs.containsValue(removing.shaName)) { //if file is tracked in commit,
-            rmstage.put(fileName, removing.shaName);//stage for removal
+        if (tracked) { //if file is tracked in commit,
+            Stage.remove(fileName, removing.shaName); //stage for removal, replacing any addition
             f.delete(); //remove from cwd
+        } else if (staged) {
+            Stage.unstage(fileName); //if file is staged for addition, unstage it
         }
+    }
 
-        Utils.writeObject(RM_STAGE, rmstage); //alters staging files
-        Utils.writeObject(ADD_STAGE, addstage);
+    //log [-n N] [--since=DATE] [--until=DATE] [[A..]B] [-- PATH...]: prints the first-parent
+    //history of B (default HEAD) not reachable from A, newest first, reading only the commits printed
+    public static void gitlog(String... args) {
+        String from = Journal.readString(HEAD);
+        String exclude = null;
+        int limit = Integer.MAX_VALUE;
+        long since = Long.MIN_VALUE, until = Long.MAX_VALUE;
+        List<String> paths = new ArrayList<>();
+        boolean range = false;
+        for (int i = 1; i < args.length; i += 1) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                for (i += 1; i < args.length; i += 1) {
+                    paths.add(args[i].replaceAll("^(\\./)+|/+$", ""));
+                }
+            } else if (arg.equals("-n") && i + 1 < args.length && args[i + 1].matches("\\d{1,9}")) {
+                i += 1;
+                limit = Integer.parseInt(args[i]);
+            } else if (arg.startsWith("--since=")) {
+                since = parseDate(arg.substring("--since=".length()));
+            } else if (arg.startsWith("--until=")) {
+                until = parseDate(arg.substring("--until=".length()));
+            } else if (!arg.startsWith("-") && !range) {
+                range = true;
+                int dots = arg.indexOf("..");
+                if (dots >= 0) {
+                    exclude = revision(arg.substring(0, dots));
+                    arg = arg.substring(dots + 2);
+                }
+                from = revision(arg);
+            } else {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+        History history = new History(from, exclude).limit(limit).between(since, until)
+            .touching(paths);
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out), 1 << 16)); //flushed as it fills, and once at the end
+        while (history.hasNext()) {
+            Commit toPrint = history.next();
+            out.println("===");
+            out.println("commit " + toPrint.shaName);
+            out.println("Date: " + toPrint.timestamp);
+            out.println(toPrint.message);
+            out.println();
+        }
+        out.flush();
     }
 
-    public static void gitlog() {
-        String head = Utils.readContentsAsString(HEAD);
-        Commit toPrint;
+    //the commit named by a branch or an (abbreviated) commit id; HEAD if empty or "HEAD"
+    private static String revision(String name) {
+        if (name.isEmpty() || name.equals("HEAD")) {
+            return Journal.readString(HEAD);
+        }
+        HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
+        if (allbranches.containsKey(name)) {
+            return (String) allbranches.get(name);
+        }
+        String id = name.length() < 40 ? shortID(name) : name;
+        if (id == null || !Utils.join(COMMITS_FOLDER, id).exists()) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return id;
+    }
 
-        for (String p = head; p != null; ) {
-            toPrint = fromShaC(p);
-            System.out.println("===");
-            System.out.println("commit " + toPrint.shaName);
-            System.out.println("Date: " + toPrint.timestamp);
-            System.out.println(toPrint.message);
-            System.out.println();
-            p = toPrint.parent;
+    //milliseconds since the epoch of a date given as yyyy-MM-dd (midnight), yyyy-MM-dd HH:mm:ss
+    //or as log prints it; in the local time zone unless the date says otherwise
+    private static long parseDate(String date) {
+        for (String pattern : new String[] {"EEE MMM dd HH:mm:ss yyyy Z", "yyyy-MM-dd HH:mm:ss",
+                                            "yyyy-MM-dd"}) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setLenient(false);
+            ParsePosition pos = new ParsePosition(0);
+            Date d = format.parse(date.trim(), pos);
+            if (d != null && pos.getIndex() == date.trim().length()) {
+                return d.getTime();
+            }
         }
+        throw Utils.error("Incorrect date: %s.", date);
     }
 
     public static void gitbranch(String branch) throws IOException {
-        HashMap allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
+        HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
         if (allbranches.containsKey(branch)) {
-            System.out.println("A branch with that name already exists.");
-            System.exit(0);
+            throw Utils.error("A branch with that name already exists.");
         }
-        allbranches.put(branch, Utils.readContentsAsString(HEAD));
-        Utils.writeObject(ALL_BRANCHES, allbranches);
+        allbranches.put(branch, Journal.readString(HEAD));
+        Journal.writeObject(ALL_BRANCHES, allbranches);
     }
 
+    //full id of the commit whose id starts with id, or null; looked up in the sorted id tables
     public static String shortID(String id) {
-        HashMap<String, String> allcommits = Utils.readObject(ALL_COMMITS, HashMap.class);
-        for (String key : allcommits.keySet()) {
-            if (key.contains(id)) {
-                return key;
-            }
-        }
-        return null;
+        return CommitIds.resolve(id);
     }
 
     public static void gitcheckout(String... args) {
-        Commit head = fromShaC(Utils.readContentsAsString(HEAD));
+        Commit head = fromShaC(Journal.readString(HEAD));
         if (args.length == 3 && args[1].equals("--")) {
             checkoutHelper(args[2], head);
         } else if (args.length == 4 && args[2].equals("--")) {
@@ -351,111 +515,109 @@ public class Main {
             if (args[1].length() < 40) {
                 id = shortID(args[1]);
             }
-            File f = Utils.join(COMMITS_FOLDER, id);
-            if (!f.exists()) {
-                System.out.println("No commit with that id exists.");
-                System.exit(0);
+            if (id == null || !Utils.join(COMMITS_FOLDER, id).exists()) {
+                throw Utils.error("No commit with that id exists.");
             }
             Commit chosenOne = fromShaC(id);
             checkoutHelper(args[3], chosenOne);
         } else if (args.length == 2) {
-            HashMap allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
-            String currentbr = Utils.readContentsAsString(CURR_BRANCH);
+            HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
+            String currentbr = Journal.readString(CURR_BRANCH);
             String brname = args[1];
             if (!allbranches.containsKey(brname)) {
-                System.out.println("No such branch exists.");
-                System.exit(0);
+                throw Utils.error("No such branch exists.");
             }
             if (currentbr.equals(brname)) {
-                System.out.println("No need to checkout the current branch.");
-                System.exit(0);
+                throw Utils.error("No need to checkout the current branch.");
             }
             Commit brhead = fromShaC((String) allbranches.get(brname));
-            if (untrackedFiles()) {
-                System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
-                System.exit(0);
-            }
-            Utils.writeContents(HEAD, brhead.shaName); //new head commit is branchHead
-            Utils.writeContents(CURR_BRANCH, brname);
-            Set<String> fn = brhead.blobs.keySet(); //set of fileNames in branch head commit
-            Set<String> og = head.blobs.keySet(); //set of fileNames in original head commit
-            for (String o : og) {
-                if (!fn.contains(o)) { //if file in original head is not present in branch head
-                    File deleting = new File(o);
-                    deleting.delete(); //delete file from cwd
-                }
-            }
-            for (String f : fn) {
-                checkoutHelper(f, brhead); //checks out all files in branch head commit
+            if (untrackedFiles(brhead)) {
+                throw Utils.error("There is an untracked file in the way; delete it, or add and commit it first.");
             }
-            Utils.writeObject(ADD_STAGE, new HashMap()); //clears staging area
-            Utils.writeObject(RM_STAGE, new HashMap());
+            Journal.writeString(HEAD, brhead.shaName); //new head commit is branchHead
+            Journal.writeString(CURR_BRANCH, brname);
+            switchFiles(head, brhead); //checks out all files in branch head commit
+            Stage.clear(); //clears staging area
         } else {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    //replaces the working files of commit from with those of commit to, touching only files that differ
+    private static void switchFiles(Commit from, Commit to) {
+        TreeMap<String, String> changes = Tree.diff(from.treeId(), to.treeId()); //shared subtrees are skipped
+        Map<String, String> unchanged = new HashMap<>(to.files());
+        unchanged.keySet().removeAll(changes.keySet()); //only stat-checked against the index
+        int written = WorkTree.checkout(changes, unchanged);
+        if (Config.isSet(Config.CHECKOUT_STATS)) {
+            int deleted = changes.size() - (to.files().size() - unchanged.size());
+            System.out.println(written + " files written, " + deleted + " deleted, "
+                    + (to.files().size() - written) + " unchanged.");
         }
     }
 
     private static void checkoutHelper(String file, Commit search) {
         //rewrites file in cwd to whatever fileName is passed in
-        if (search.blobs.containsKey(file)) {
-            Blob b = fromShaB(search.blobs.get(file));
+        String sha = search.blob(file);
+        if (sha != null) {
+            Index index = Index.get();
+            if (index.matches(file, sha)) {
+                return; //working file already has these contents
+            }
             File replacing = new File(file);
-            Utils.writeContents(replacing, b.content);
+            if (replacing.getParentFile() != null) {
+                replacing.getParentFile().mkdirs(); //file may be in a directory not yet in cwd
+            }
+            ObjectStore.checkout(sha, replacing); //streams blob into cwd
+            index.update(file, sha);
         } else {
-            System.out.print("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
     }
 
+    //streams the commit log rather than reading every commit
     public static void gitgloballog() {
-        HashMap allcommits = Utils.readObject(ALL_COMMITS, HashMap.class);
-        Set<String> keys = allcommits.keySet();
-        Commit toPrint;
-        for (String key : keys) {
-            toPrint = fromShaC(key);
-            System.out.println("===");
-            System.out.println("commit " + toPrint.shaName);
-            System.out.println("Date: " + toPrint.timestamp);
-            System.out.println(toPrint.message);
-            System.out.println();
-        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out), 1 << 16));
+        CommitLog.each(e -> {
+            out.println("===");
+            out.println("commit " + e.sha);
+            out.println("Date: " + e.timestamp);
+            out.println(e.message);
+            out.println();
+        });
+        out.flush();
     }
 
     public static void gitfind(String message) {
-        HashMap allcommits = Utils.readObject(ALL_COMMITS, HashMap.class);
-        if (!allcommits.containsValue(message)) {
-            System.out.println("Found no commit with that message.");
-            System.exit(0);
+        List<String> found = CommitLog.find(message); //looked up in the message index
+        if (found.isEmpty()) {
+            throw Utils.error("Found no commit with that message.");
         }
-        for(Object entry: allcommits.keySet()) {
-            if (allcommits.get(entry).equals(message)) {
-                System.out.println(entry);
-            }
+        for (String sha : found) {
+            System.out.println(sha);
         }
     }
 
     public static void rmBranch(String name) {
-        HashMap allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
+        HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
         if (!allbranches.containsKey(name)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         }
-        String headBranch = Utils.readContentsAsString(CURR_BRANCH);
+        String headBranch = Journal.readString(CURR_BRANCH);
         if (name.equals(headBranch)) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            throw Utils.error("Cannot remove the current branch.");
         }
         else {
             allbranches.remove(name);
-            Utils.writeObject(ALL_BRANCHES, allbranches);
+            Journal.writeObject(ALL_BRANCHES, allbranches);
         }
     }
 
     public static void gitstatus() {
         System.out.println("=== Branches ===");
-        HashMap allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
-        String headBranch = Utils.readContentsAsString(CURR_BRANCH);
+        HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
+        String headBranch = Journal.readString(CURR_BRANCH);
         ArrayList keys = new ArrayList(allbranches.keySet());
         Collections.sort(keys);
         for (Object branch : keys) {
@@ -467,20 +629,42 @@ public class Main {
         }
         System.out.println();
         System.out.println("=== Staged Files ===");
-        HashMap addstage = Utils.readObject(ADD_STAGE, HashMap.class);
-        for (Object name : addstage.keySet()) {
+        Stage stage = Stage.read();
+        Map<String, String> addstage = stage.added();
+        for (String name : new TreeSet<>(addstage.keySet())) {
             System.out.println(name);
         }
         System.out.println();
         System.out.println("=== Removed Files ===");
-        HashMap rmstage = Utils.readObject(RM_STAGE, HashMap.class);
-        for (Object name : rmstage.keySet()) {
+        Map<String, String> rmstage = stage.removed();
+        for (String name : new TreeSet<>(rmstage.keySet())) {
             System.out.println(name);
         }
         System.out.println();
+
+        Commit head = fromShaC(Journal.readString(HEAD));
+        Map<String, String> tracked = head.files();
+        TreeSet<String> names = new TreeSet<>(tracked.keySet());
+        names.addAll(addstage.keySet());
+        names.removeAll(rmstage.keySet()); //staged for removal, so shown as removed or untracked instead
+        TreeMap<String, String> current = WorkTree.hash(names); //hashed in parallel
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (String name : names) {
+            String expected = addstage.containsKey(name) ? addstage.get(name) : tracked.get(name);
+            String actual = current.get(name);
+            if (actual == null) {
+                System.out.println(name + " (deleted)");
+            } else if (!actual.equals(expected)) {
+                System.out.println(name + " (modified)");
+            }
+        }
         System.out.println();
         System.out.println("=== Untracked Files ===");
+        for (String name : WorkTree.files()) {
+            if (isUntracked(name, head, addstage, rmstage)) {
+                System.out.println(name);
+            }
+        }
         System.out.println();
     }
 
@@ -489,167 +673,180 @@ public class Main {
         if (commID.length() < 40) {
             id = shortID(commID);
         }
-        File f = Utils.join(COMMITS_FOLDER, id);
-        if (!f.exists()) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
-        }
-        if (untrackedFiles()) {
-            System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
-            System.exit(0);
+        if (id == null || !Utils.join(COMMITS_FOLDER, id).exists()) {
+            throw Utils.error("No commit with that id exists.");
         }
         Commit given = fromShaC(id);
-        for (Object fileName : given.blobs.keySet()) {
-            checkoutHelper((String) fileName, given);
-        }
-        Commit head = fromShaC(Utils.readContentsAsString(HEAD));
-        Set<String> fn = given.blobs.keySet(); //set of fileNames in branch head commit
-        Set<String> og = head.blobs.keySet(); //set of fileNames in original head commit
-        for (String o : og) {
-            if (!fn.contains(o)) { //if file in original head is not present in branch head
-                File deleting = new File(o);
-                deleting.delete(); //delete file from cwd
-            }
-        }
-        Utils.writeContents(HEAD, id); //head changed to given commit
-        HashMap allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
-        allbranches.replace(Utils.readContentsAsString(CURR_BRANCH), id); //given commit becomes head of current branch
-        Utils.writeObject(ALL_BRANCHES, allbranches);
-        Utils.writeObject(ADD_STAGE, new HashMap<>()); //staging area cleared
-        Utils.writeObject(RM_STAGE, new HashMap<>());
-    }
-
-    public static boolean untrackedFiles() {
-        Commit head = fromShaC(Utils.readContentsAsString(HEAD));
-        List<String> allfiles = Utils.plainFilenamesIn();
-        List<String> txtfiles = new ArrayList<>();
-        HashMap addstage = Utils.readObject(ADD_STAGE, HashMap.class);
-        for (String file : allfiles) {
-            if (file.contains(".txt")) {
-                txtfiles.add(file);
-            }
-        }
-        for (String file : txtfiles) {
-            if (!head.blobs.containsKey(file) && !addstage.containsKey(file)) {
+        if (untrackedFiles(given)) {
+            throw Utils.error("There is an untracked file in the way; delete it, or add and commit it first.");
+        }
+        Commit head = fromShaC(Journal.readString(HEAD));
+        switchFiles(head, given);
+        Journal.writeString(HEAD, id); //head changed to given commit
+        HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
+        allbranches.replace(Journal.readString(CURR_BRANCH), id); //given commit becomes head of current branch
+        Journal.writeObject(ALL_BRANCHES, allbranches);
+        Stage.clear(); //staging area cleared
+    }
+
+    //true if a working file untracked in the current commit would be overwritten by target's version
+    public static boolean untrackedFiles(Commit target) {
+        Commit head = fromShaC(Journal.readString(HEAD));
+        Stage stage = Stage.read();
+        head.files(); //flattened once, rather than looked up in the trees file by file
+        Map<String, String> wanted = target.files();
+        for (String file : WorkTree.files()) {
+            if (isUntracked(file, head, stage.added(), stage.removed()) && wanted.containsKey(file)) {
                 return true;
             }
         }
         return false;
     }
 
+    //a working file is untracked if it is neither staged for addition nor tracked (and not removed) in head
+    private static boolean isUntracked(String file, Commit head, Map<String, String> addstage,
+                                       Map<String, String> rmstage) {
+        if (addstage.containsKey(file)) {
+            return false;
+        }
+        return head.blob(file) == null || rmstage.containsKey(file);
+    }
+
     public static void gitmerge(String givenbr) throws IOException {
-        Commit currhead = fromShaC(Utils.readContentsAsString(HEAD));
-        HashMap allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
-        if (untrackedFiles()) {
-            System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
-            System.exit(0);
+        if (!Stage.read().isEmpty()) {
+            throw Utils.error("You have uncommitted changes.");
         }
+        HashMap allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
         if (!allbranches.containsKey(givenbr)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         }
-        if (currhead.branch == givenbr) {
-            System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
+        String currentbr = Journal.readString(CURR_BRANCH);
+        if (currentbr.equals(givenbr)) {
+            throw Utils.error("Cannot merge a branch with itself.");
         }
+        Commit currhead = fromShaC(Journal.readString(HEAD));
         Commit givenhead = fromShaC((String) allbranches.get(givenbr));
-        HashMap addstage = Utils.readObject(ADD_STAGE, HashMap.class);
-        HashMap rmstage = Utils.readObject(RM_STAGE, HashMap.class);
-        if (!addstage.isEmpty() || !rmstage.isEmpty()) {
-            System.out.println("You have uncommitted changes.");
-            System.exit(0);
+        if (untrackedFiles(givenhead)) {
+            throw Utils.error("There is an untracked file in the way; delete it, or add and commit it first.");
         }
         String splitSha = splitFinder(givenbr);
         Commit splitpoint = fromShaC(splitSha);
+        if (splitSha.equals(givenhead.shaName)) {
+            throw Utils.error("Given branch is an ancestor of the current branch.");
+        }
         if (splitSha.equals(currhead.shaName)) {
             gitcheckout("checkout", givenbr);
             System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
-        }
-        if (splitSha.equals(givenhead.shaName)) {
-            System.out.println("Given branch is an ancestor of the current branch.");
-            System.exit(0);
+            return;
         }
 
+        TreeSet<String> files = new TreeSet<>(splitpoint.files().keySet());
+        files.addAll(currhead.files().keySet());
+        files.addAll(givenhead.files().keySet()); //files deleted on either side count too
         boolean conflicts = false;
-        for (String file : givenhead.blobs.keySet()) {
-            if (ifGivenModified(splitpoint, currhead, givenhead, file)) {
-                gitcheckout(givenhead.shaName, "--", file);
-                addstage.put(file, givenhead.blobs.get(file));
-                continue;
-            }
-            if (ifOnlyGiven(splitpoint, currhead, givenhead, file)) {
-                gitcheckout(givenhead.shaName, "--", file);
-                addstage.put(file, givenhead.blobs.get(file));
-                continue;
-            }
-            if (goneFromGiven(splitpoint, currhead, givenhead, file)) {
-                File removing = new File(file);
-                rmstage.put(file, currhead.blobs.get(file));
-                removing.delete();
-                continue;
-            }
-            if (inConflictOne(splitpoint, currhead, givenhead, file)) {
-                Blob currb = fromShaB(currhead.blobs.get(file));
-                Blob givb = fromShaB(givenhead.blobs.get(file));
-                File cwdf = new File(file);
-                Utils.writeContents(cwdf, "<<<<<<< HEAD" + currb.content
-                        + "=======" + givb.content + ">>>>>>>");
-                conflicts = true;
-                Blob changed = new Blob(file);
-                addstage.put(file, changed.shaName);
-                continue;
-            }
-            if (inConflictTwo(splitpoint, currhead, givenhead, file)) {
-                Blob currb = fromShaB(currhead.blobs.get(file));
-                File cwdf = new File(file);
-                Utils.writeContents(cwdf, "<<<<<<< HEAD" + currb.content
-                        + "=======" + System.lineSeparator() + ">>>>>>>");
-                conflicts = true;
-                Blob changed = new Blob(file);
-                addstage.put(file, changed.shaName);
-                continue;
-            }
-            if (inConflictThree(splitpoint, currhead, givenhead, file)) {
-                Blob givb = fromShaB(givenhead.blobs.get(file));
-                File cwdf = new File(file);
-                Utils.writeContents(cwdf, "<<<<<<< HEAD" + System.lineSeparator()
-                        + "=======" + givb.content + ">>>>>>>");
-                conflicts = true;
-                Blob changed = new Blob(file);
-                addstage.put(file, changed.shaName);
-                continue;
-            }
-            if (inConflictFour(splitpoint, currhead, givenhead, file)) {
-                Blob currb = fromShaB(currhead.blobs.get(file));
-                Blob givb = fromShaB(givenhead.blobs.get(file));
-                File cwdf = new File(file);
-                Utils.writeContents(cwdf, "<<<<<<< HEAD" + currb.content
-                        + "=======" + givb.content + ">>>>>>>");
-                conflicts = true;
-                Blob changed = new Blob(file);
-                addstage.put(file, changed.shaName);
-                continue;
-            }
-        }
-        gitcommit("Merged" + givenbr + "into" + currhead.branch + ".");
-        Commit merged = fromShaC(Utils.readContentsAsString(HEAD));
-        merged.parent2 = givenhead.shaName;
+        for (String file : files) {
+            String split = splitpoint.blob(file);
+            String ours = currhead.blob(file);
+            String theirs = givenhead.blob(file);
+            if (ifGivenModified(splitpoint, currhead, givenhead, file)
+                    || ifOnlyGiven(splitpoint, currhead, givenhead, file)) {
+                checkoutHelper(file, givenhead);
+                Stage.add(file, theirs);
+            } else if (goneFromGiven(splitpoint, currhead, givenhead, file)) {
+                Stage.remove(file, ours);
+                new File(file).delete();
+                Index.get().remove(file);
+            } else if (inConflictOne(splitpoint, currhead, givenhead, file)) {
+                conflicts |= mergeFile(file, split, ours, theirs); //line by line
+            } else if (inConflictFour(splitpoint, currhead, givenhead, file)) {
+                conflicts |= mergeFile(file, null, ours, theirs); //no common lines to start from
+            } else if (inConflictTwo(splitpoint, currhead, givenhead, file)
+                    || inConflictThree(splitpoint, currhead, givenhead, file)) {
+                conflicts |= mergeFile(file, split, ours, theirs);
+            }
+        }
+        gitcommit("Merged " + givenbr + " into " + currentbr + ".", givenhead.shaName);
         if (conflicts) {
             System.out.println("Encountered a merge conflict.");
         }
     }
 
+    //writes the merge of blobs ours and theirs, changed from blob split, into the working file and stages it;
+    //a file deleted on one side conflicts whole with the other side's version. true if it conflicted
+    private static boolean mergeFile(String file, String split, String ours, String theirs)
+        throws IOException {
+        Merge.Text base = split == null ? InputStream::nullInputStream : () -> ObjectStore.open(split);
+        Merge.Text our = ours == null ? null : () -> ObjectStore.open(ours);
+        Merge.Text their = theirs == null ? null : () -> ObjectStore.open(theirs);
+        File cwdf = new File(file);
+        if (cwdf.getParentFile() != null) {
+            cwdf.getParentFile().mkdirs();
+        }
+        boolean conflict = true;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(cwdf),
+                ObjectStore.BUFFER_SIZE)) {
+            if (our == null || their == null) {
+                Merge.conflict(our, their, out);
+            } else {
+                conflict = Merge.merge(base, our, their, out); //reads the blobs, not the working file
+            }
+        }
+        String sha = saveStaged(file, ObjectStore.hash(cwdf, file));
+        Index.get().update(file, sha);
+        Stage.add(file, sha);
+        return conflict;
+    }
+
+    public static void gitgc() throws IOException {
+        //folds loose blobs and existing packs into one delta-compressed pack
+        Pack.repack();
+    }
+
+    public static void gitmigrate() {
+        //rewrites commits and blobs still stored as serialized Java objects
+        for (String sha : Utils.plainFilenamesIn(COMMITS_FOLDER)) {
+            File f = Utils.join(COMMITS_FOLDER, sha);
+            if (Codec.isSerialized(Utils.readContents(f))) {
+                Commit c = Utils.readObject(f, Commit.class);
+                Utils.writeContents(f, Codec.encodeCommit(c));
+            }
+        }
+        for (File dir : new File[] {BLOBS_FOLDER, STAGING_FOLDER}) {
+            List<String> names = Utils.plainFilenamesIn(dir); //no staging directory since the staging log
+            for (String sha : names == null ? List.<String>of() : names) {
+                File f = Utils.join(dir, sha);
+                if (ObjectStore.isSerialized(f)) {
+                    ObjectStore.writeBlob(ObjectStore.readBlob(f), f);
+                }
+            }
+        }
+    }
+
+    public static void gitconfig(String... args) {
+        //prints the setting named args[1], or sets it to args[2]
+        if (args.length == 2) {
+            String value = Config.get(args[1], null);
+            if (value != null) {
+                System.out.println(value);
+            }
+        } else {
+            if (args[1].equals(Config.CACHE_SIZE)) {
+                ObjectCache.parseSize(args[2]); //refuses a size no command could use
+            }
+            Config.set(args[1], args[2]);
+        }
+    }
+
     public static boolean ifGivenModified(Commit splitpoint, Commit current, Commit given, String file) {
         //Any files that have been modified in the given branch since the split point,
         // but not modified in the current branch since the split point should be changed
         // to their versions in the given branch (checked out from the commit at the front
         // of the given branch). These files should then all be automatically staged.
         boolean mod = false;
-        if (splitpoint.blobs.keySet().contains(file) && current.blobs.keySet().contains(file)
-                && given.blobs.keySet().contains(file)) {
-            if (splitpoint.blobs.get(file).equals(current.blobs.get(file))
-                    && !splitpoint.blobs.get(file).equals(given.blobs.get(file))) {
+        if (splitpoint.files().containsKey(file) && current.files().containsKey(file)
+                && given.files().containsKey(file)) {
+            if (splitpoint.blob(file).equals(current.blob(file))
+                    && !splitpoint.blob(file).equals(given.blob(file))) {
                 mod = true;
             }
         }
@@ -660,9 +857,9 @@ public class Main {
         //Any files present at the split point, unmodified in the current branch,
         // and absent in the given branch should be removed (and untracked).
         boolean gone = false;
-        if (splitpoint.blobs.keySet().contains(file) && current.blobs.keySet().contains(file)
-                && !given.blobs.keySet().contains(file)) {
-            if (splitpoint.blobs.get(file).equals(current.blobs.get(file))) {
+        if (splitpoint.files().containsKey(file) && current.files().containsKey(file)
+                && !given.files().containsKey(file)) {
+            if (splitpoint.blob(file).equals(current.blob(file))) {
                 gone = true;
             }
         }
@@ -673,9 +870,9 @@ public class Main {
         //Any files that were not present at the split point and are present only in the given
         // branch should be checked out and staged.
         boolean only = false;
-        if (!splitpoint.blobs.keySet().contains(file)) {
-            if (!current.blobs.keySet().contains(file)) {
-                if (given.blobs.keySet().contains(file)) {
+        if (!splitpoint.files().containsKey(file)) {
+            if (!current.files().containsKey(file)) {
+                if (given.files().containsKey(file)) {
                     only = true;
                 }
             }
@@ -685,11 +882,11 @@ public class Main {
     public static boolean inConflictOne(Commit splitpoint, Commit current, Commit given, String file) {
         //the contents of both are changed and different from each other
         boolean conf1 = false;
-        if (splitpoint.blobs.keySet().contains(file) && current.blobs.keySet().contains(file)
-                && given.blobs.keySet().contains(file)) {
-            if (!splitpoint.blobs.get(file).equals(current.blobs.get(file))
-                    && !splitpoint.blobs.get(file).equals(given.blobs.get(file))) {
-                if (!current.blobs.get(file).equals(given.blobs.get(file))) {
+        if (splitpoint.files().containsKey(file) && current.files().containsKey(file)
+                && given.files().containsKey(file)) {
+            if (!splitpoint.blob(file).equals(current.blob(file))
+                    && !splitpoint.blob(file).equals(given.blob(file))) {
+                if (!current.blob(file).equals(given.blob(file))) {
                     conf1 = true;
                 }
             }
@@ -701,9 +898,9 @@ public class Main {
         //the contents of one are changed and the other file is delete
         // deleted from given
         boolean conf2 = false;
-        if (splitpoint.blobs.keySet().contains(file) && current.blobs.keySet().contains(file)
-                && !given.blobs.keySet().contains(file)) {
-            if (!splitpoint.blobs.get(file).equals(current.blobs.get(file))) {
+        if (splitpoint.files().containsKey(file) && current.files().containsKey(file)
+                && !given.files().containsKey(file)) {
+            if (!splitpoint.blob(file).equals(current.blob(file))) {
                 conf2 = true;
             }
         }
@@ -714,9 +911,9 @@ public class Main {
         //the contents of one are changed and the other file is delete
         // deleted from current
         boolean conf3 = false;
-        if (splitpoint.blobs.keySet().contains(file) && !current.blobs.keySet().contains(file)
-                && given.blobs.keySet().contains(file)) {
-            if (!splitpoint.blobs.get(file).equals(given.blobs.get(file))) {
+        if (splitpoint.files().containsKey(file) && !current.files().containsKey(file)
+                && given.files().containsKey(file)) {
+            if (!splitpoint.blob(file).equals(given.blob(file))) {
                 conf3 = true;
             }
         }
@@ -726,9 +923,9 @@ public class Main {
     public static boolean inConflictFour(Commit splitpoint, Commit current, Commit given, String file) {
         //the file was absent at the split point and has different contents in the given and current branches
         boolean conf4 = false;
-        if (!splitpoint.blobs.keySet().contains(file) && current.blobs.keySet().contains(file)
-                && given.blobs.keySet().contains(file)) {
-            if (!current.blobs.get(file).equals(given.blobs.get(file))) {
+        if (!splitpoint.files().containsKey(file) && current.files().containsKey(file)
+                && given.files().containsKey(file)) {
+            if (!current.blob(file).equals(given.blob(file))) {
                 conf4 = true;
             }
         }
@@ -736,21 +933,11 @@ public class Main {
     }
 
     public static String splitFinder(String branch) {
-        HashMap<String, String> allbranches = Utils.readObject(ALL_BRANCHES, HashMap.class);
-        ArrayList<String> check = new ArrayList<>();
-        for (String given = allbranches.get(branch); given != null; ) {
-            Commit c = fromShaC(given);
-            check.add(given);
-            given = c.parent;
-        }
-        Commit currhead = fromShaC(Utils.readContentsAsString(HEAD));
-        for (String splitSha = currhead.shaName; splitSha != null; ) {
-            Commit c = fromShaC(splitSha);
-            if (check.contains(splitSha)) {
-                return c.shaName;
-            }
-            splitSha = c.parent;
-        }
-        return null;
+        //best common ancestor of HEAD and the branch head, over both parents
+        HashMap<String, String> allbranches = Journal.readObject(ALL_BRANCHES, HashMap.class);
+        CommitGraph graph = CommitGraph.get();
+        int split = graph.mergeBase(graph.indexOf(Journal.readString(HEAD)),
+                graph.indexOf(allbranches.get(branch)));
+        return split == CommitGraph.NONE ? null : graph.id(split);
     }
 }
\ No newline at end of file
@@ -0,0 +1,352 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/** Three-way merging of text, line by line, in the manner of diff3.
+ *  Each side is compared with the common base using Myers' algorithm;
+ *  stretches where all three agree are kept, a stretch changed on one side
+ *  only takes that side's lines, and only a stretch that both sides
+ *  changed, differently, becomes a conflict.
+ *
+ *  Files are never held in memory whole.  Lines are compared by a 64-bit
+ *  hash of their bytes, newline included, so each file costs 8 bytes a
+ *  line.  The merged text is then written by reading the two sides again,
+ *  from start to end.  Two different lines with the same hash would be
+ *  taken as equal; with 64-bit hashes that is too unlikely to matter.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Merge {
+
+    /** Conflict markers, each on a line of its own. */
+    private static final byte[] OURS_MARKER = bytes("<<<<<<< HEAD\n"),
+        SEPARATOR = bytes("=======\n"), THEIRS_MARKER = bytes(">>>>>>>\n");
+    /** Stands for a line with no counterpart. */
+    private static final int NONE = -1;
+
+    /** A text that can be read from the start more than once. */
+    interface Text {
+        /** Returns a new stream of the text. */
+        InputStream open() throws IOException;
+    }
+
+    /** Writes to OUT the merge of OURS and THEIRS, two versions of BASE.
+     *  Returns true iff there were conflicts, which are written between
+     *  markers with our lines first. */
+    static boolean merge(Text base, Text ours, Text theirs, OutputStream out)
+        throws IOException {
+        long[] b = hashLines(base);
+        long[] o = hashLines(ours);
+        long[] t = hashLines(theirs);
+        int[] toOurs = match(b, o);
+        int[] toTheirs = match(b, t);
+        boolean conflicts = false;
+        try (Lines ourLines = new Lines(ours.open(), out);
+             Lines theirLines = new Lines(theirs.open(), out)) {
+            int i = 0, j = 0, k = 0;
+            while (i < b.length || j < o.length || k < t.length) {
+                int n = 0;
+                while (i + n < b.length && toOurs[i + n] == j + n
+                        && toTheirs[i + n] == k + n) {
+                    n += 1;
+                }
+                if (n > 0) {
+                    ourLines.copy(j, j + n);
+                    i += n;
+                    j += n;
+                    k += n;
+                    continue;
+                }
+                //the next base line both sides kept ends this stretch
+                int i2 = i;
+                while (i2 < b.length && (toOurs[i2] == NONE || toTheirs[i2] == NONE)) {
+                    i2 += 1;
+                }
+                int j2 = i2 < b.length ? toOurs[i2] : o.length;
+                int k2 = i2 < b.length ? toTheirs[i2] : t.length;
+                if (unchanged(toOurs, i, i2, j, j2)) {
+                    theirLines.copy(k, k2);
+                } else if (unchanged(toTheirs, i, i2, k, k2)
+                        || Arrays.equals(o, j, j2, t, k, k2)) {
+                    ourLines.copy(j, j2);
+                } else {
+                    out.write(OURS_MARKER);
+                    ourLines.copy(j, j2);
+                    ourLines.endLine();
+                    out.write(SEPARATOR);
+                    theirLines.copy(k, k2);
+                    theirLines.endLine();
+                    out.write(THEIRS_MARKER);
+                    conflicts = true;
+                }
+                i = i2;
+                j = j2;
+                k = k2;
+            }
+        }
+        return conflicts;
+    }
+
+    /** Writes to OUT a conflict between the whole of OURS and the whole
+     *  of THEIRS, either of which may be null, standing for an empty
+     *  text. */
+    static void conflict(Text ours, Text theirs, OutputStream out) throws IOException {
+        out.write(OURS_MARKER);
+        for (Text side : new Text[] {ours, theirs}) {
+            if (side != null) {
+                try (Lines lines = new Lines(side.open(), out)) {
+                    lines.copy(0, Integer.MAX_VALUE);
+                    lines.endLine();
+                }
+            }
+            out.write(side == ours ? SEPARATOR : THEIRS_MARKER);
+        }
+    }
+
+    /** Returns true iff MATCH takes base lines LO .. HI - 1 to lines
+     *  LO2 .. HI2 - 1 of the other text, in order and with nothing
+     *  between. */
+    private static boolean unchanged(int[] match, int lo, int hi, int lo2, int hi2) {
+        if (hi - lo != hi2 - lo2) {
+            return false;
+        }
+        for (int x = lo; x < hi; x += 1) {
+            if (match[x] != lo2 + x - lo) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns, for each line of A, the number of the line of B it is
+     *  matched with in a shortest edit script from A to B, or NONE. */
+    static int[] match(long[] a, long[] b) {
+        int[] result = new int[a.length];
+        Arrays.fill(result, NONE);
+        ArrayDeque<int[]> work = new ArrayDeque<>();
+        work.push(new int[] {0, a.length, 0, b.length});
+        while (!work.isEmpty()) {
+            int[] r = work.pop();
+            int aLo = r[0], aHi = r[1], bLo = r[2], bHi = r[3];
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                result[aLo++] = bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                result[--aHi] = --bHi;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                continue;
+            }
+            long split = split(a, aLo, aHi, b, bLo, bHi);
+            int x = (int) (split >>> 32), y = (int) split;
+            if (split >= 0 && x + y > 0 && x + y < aHi - aLo + bHi - bLo) {
+                work.push(new int[] {aLo + x, aHi, bLo + y, bHi});
+                work.push(new int[] {aLo, aLo + x, bLo, bLo + y});
+            }
+        }
+        return result;
+    }
+
+    /** Returns a point (X, Y), packed as X << 32 | Y, through which a
+     *  shortest edit script from A[ALO .. AHI - 1] to B[BLO .. BHI - 1]
+     *  passes, found by searching from both ends at once for the middle
+     *  snake, or -1 if the two have no line in common.  Neither range is
+     *  empty.  Past a cost of about the square root of the lengths, the
+     *  search settles for the point the forward search has got furthest
+     *  with, as git's xdiff does, so the script found is then not always
+     *  the shortest. */
+    private static long split(long[] a, int aLo, int aHi, long[] b, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int most = (n + m + 1) / 2;
+        int limit = Math.min(most, Math.max(256, (int) Math.sqrt((double) n + m)));
+        int off = limit + 1;
+        int[] forward = new int[2 * limit + 3];
+        int[] backward = new int[2 * limit + 3];
+        Arrays.fill(forward, NONE);
+        Arrays.fill(backward, NONE);
+        forward[off + 1] = 0;
+        backward[off + 1] = 0;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        //diagonals that have run off the edges are no longer searched
+        int fStart = 0, fEnd = 0, bStart = 0, bEnd = 0;
+        int bestX = 0, bestY = 0;
+        for (int d = 0; d < limit; d += 1) {
+            for (int k = -d + fStart; k <= d - fEnd; k += 2) {
+                int x;
+                if (k == -d || (k != d && forward[off + k - 1] < forward[off + k + 1])) {
+                    x = forward[off + k + 1];
+                } else {
+                    x = forward[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[off + k] = x;
+                if (x > n) {
+                    fEnd += 2;
+                } else if (y > m) {
+                    fStart += 2;
+                } else {
+                    if (x + y > bestX + bestY) {
+                        bestX = x;
+                        bestY = y;
+                    }
+                    int k2 = off + delta - k;
+                    if (odd && k2 >= 0 && k2 < backward.length && backward[k2] != NONE
+                            && x >= n - backward[k2]) {
+                        return (long) x << 32 | y;
+                    }
+                }
+            }
+            for (int k = -d + bStart; k <= d - bEnd; k += 2) {
+                int x;
+                if (k == -d || (k != d && backward[off + k - 1] < backward[off + k + 1])) {
+                    x = backward[off + k + 1];
+                } else {
+                    x = backward[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[off + k] = x;
+                if (x > n) {
+                    bEnd += 2;
+                } else if (y > m) {
+                    bStart += 2;
+                } else {
+                    int k2 = off + delta - k;
+                    if (!odd && k2 >= 0 && k2 < forward.length && forward[k2] != NONE
+                            && forward[k2] >= n - x) {
+                        int fx = forward[k2];
+                        return (long) fx << 32 | (fx - (k2 - off));
+                    }
+                }
+            }
+        }
+        if (limit == most || bestX + bestY == 0 || bestX + bestY == n + m) {
+            return -1;
+        }
+        return (long) bestX << 32 | bestY;
+    }
+
+    /** Returns the hashes of the lines of TEXT, in order. */
+    static long[] hashLines(Text text) throws IOException {
+        long[] result = new long[1024];
+        int count = 0;
+        byte[] buf = new byte[ObjectStore.BUFFER_SIZE];
+        long h = FNV_BASIS;
+        boolean partial = false;
+        try (InputStream in = text.open()) {
+            for (int len = in.read(buf); len >= 0; len = in.read(buf)) {
+                for (int i = 0; i < len; i += 1) {
+                    h = (h ^ (buf[i] & 0xff)) * FNV_PRIME;
+                    partial = true;
+                    if (buf[i] == '\n') {
+                        if (count == result.length) {
+                            result = Arrays.copyOf(result, 2 * count);
+                        }
+                        result[count++] = mix(h);
+                        h = FNV_BASIS;
+                        partial = false;
+                    }
+                }
+            }
+        }
+        if (partial) {
+            result = Arrays.copyOf(result, count + 1);
+            result[count++] = mix(h);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Constants of the 64-bit FNV-1a hash. */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+    /** Returns H with its bits mixed, so that all of them depend on every
+     *  byte hashed. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** Returns the UTF-8 bytes of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The lines of one text, read once from start to end and copied out
+     *  a stretch at a time. */
+    private static class Lines implements AutoCloseable {
+        /** Lines read from IN, to be copied to OUT. */
+        Lines(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        /** Copies lines LO .. HI - 1 to OUT, skipping any before LO.  LO
+         *  is never before a line already read. */
+        void copy(int lo, int hi) throws IOException {
+            while (line < hi) {
+                if (pos == limit) {
+                    pos = 0;
+                    limit = Math.max(0, in.read(buf));
+                    if (limit == 0) {
+                        return;
+                    }
+                }
+                int start = pos;
+                while (pos < limit && line < hi) {
+                    if (buf[pos++] == '\n') {
+                        line += 1;
+                        if (line == lo) {
+                            start = pos; //nothing before here is copied
+                        }
+                    }
+                }
+                if (line >= lo && pos > start) {
+                    out.write(buf, start, pos - start);
+                    last = buf[pos - 1] & 0xff;
+                }
+            }
+        }
+
+        /** Ends the line last copied if it lacks a newline, as the last
+         *  line of a text can. */
+        void endLine() throws IOException {
+            if (last != '\n' && last != NONE) {
+                out.write('\n');
+            }
+            last = NONE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /** The text. */
+        private final InputStream in;
+        /** Bytes read from IN, of which those from POS to LIMIT are yet to
+         *  be copied or skipped. */
+        private final byte[] buf = new byte[ObjectStore.BUFFER_SIZE];
+        private int pos, limit;
+        /** Where lines are copied to. */
+        private final OutputStream out;
+        /** Number of lines read so far. */
+        private int line;
+        /** Last byte copied, or NONE. */
+        private int last = NONE;
+    }
+}
@@ -0,0 +1,218 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/** A cache of objects read from the repository, by id, holding at most
+ *  a given number of bytes' worth of them and dropping the least
+ *  recently used first.  Objects are never changed once stored, so an
+ *  object cached is always up to date, however long it stays; the
+ *  daemon keeps the caches warm across commands.
+ *
+ *  There is one cache each for commits, trees and blobs, sharing the
+ *  budget set by core.cacheSize (in bytes, 64 MiB by default): blobs get
+ *  half and commits and trees a quarter each.  The weight of an object
+ *  is an estimate of the memory it takes up.  An object weighing more
+ *  than a quarter of its cache is not kept, so that one large file does
+ *  not push out everything else.
+ *
+ *  A cache may be used from several threads at once.  Objects are read
+ *  with no lock held, so two threads that miss on the same id at once
+ *  both read it, and the second copy replaces the first.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class ObjectCache<V> {
+
+    /** Default total size of the caches, in bytes. */
+    static final long DEFAULT_SIZE = 64L << 20;
+
+    /** Estimated memory taken by one entry of a map of names to ids. */
+    private static final int ENTRY_WEIGHT = 96;
+
+    /** Commits, by id. */
+    static final ObjectCache<Commit> COMMITS =
+        new ObjectCache<>("commits", DEFAULT_SIZE / 4, ObjectCache::weigh);
+    /** Trees, by id. */
+    static final ObjectCache<Tree> TREES =
+        new ObjectCache<>("trees", DEFAULT_SIZE / 4, ObjectCache::weigh);
+    /** Blobs with their contents, by id. */
+    static final ObjectCache<Blob> BLOBS =
+        new ObjectCache<>("blobs", DEFAULT_SIZE / 2, ObjectCache::weigh);
+
+    /** Sizes the caches to the budget set for this repository, dropping
+     *  objects if they shrink.  Called at the start of each command, so
+     *  that the daemon follows changes to core.cacheSize. */
+    static void configure() {
+        long budget = parseSize(Config.get(Config.CACHE_SIZE, Long.toString(DEFAULT_SIZE)));
+        COMMITS.resize(budget / 4);
+        TREES.resize(budget / 4);
+        BLOBS.resize(budget / 2);
+    }
+
+    /** A cache called NAME holding at most CAPACITY bytes of objects,
+     *  weighed by WEIGHER. */
+    ObjectCache(String name, long capacity, ToLongFunction<V> weigher) {
+        this.name = name;
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    /** Returns the object ID, calling LOADER to read it if it is not
+     *  cached. */
+    V get(String id, Function<String, V> loader) {
+        synchronized (this) {
+            Slot<V> s = slots.get(id);
+            if (s != null) {
+                hits += 1;
+                return s.value;
+            }
+            misses += 1;
+        }
+        V value = loader.apply(id);
+        put(id, value);
+        return value;
+    }
+
+    /** Caches VALUE as the object ID, or weighs it again if it is already
+     *  cached, since it may have grown. */
+    synchronized void put(String id, V value) {
+        long w = weigher.applyAsLong(value);
+        Slot<V> old = slots.remove(id);
+        if (old != null) {
+            weight -= old.weight;
+        }
+        if (w > capacity / 4) {
+            return;
+        }
+        slots.put(id, new Slot<>(value, w));
+        weight += w;
+        resize(capacity);
+    }
+
+    /** Makes CAPACITY the greatest total weight of the objects cached,
+     *  dropping the least recently used until they fit. */
+    synchronized void resize(long capacity) {
+        this.capacity = capacity;
+        Iterator<Slot<V>> eldest = slots.values().iterator();
+        while (weight > capacity) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evictions += 1;
+        }
+    }
+
+    /** Weighs VALUE again if it is the object cached as ID. */
+    synchronized void reweigh(String id, V value) {
+        Slot<V> s = slots.get(id);
+        if (s != null && s.value == value) {
+            put(id, value);
+        }
+    }
+
+    /** Drops every object. */
+    synchronized void clear() {
+        slots.clear();
+        weight = 0;
+    }
+
+    /** Returns the name of this cache. */
+    String name() {
+        return name;
+    }
+
+    /** Returns the number of lookups that found their object. */
+    synchronized long hits() {
+        return hits;
+    }
+
+    /** Returns the number of lookups that had to read their object. */
+    synchronized long misses() {
+        return misses;
+    }
+
+    /** Returns the number of objects dropped to make room. */
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    /** Returns the number of objects cached. */
+    synchronized int size() {
+        return slots.size();
+    }
+
+    /** Returns the total weight of the objects cached. */
+    synchronized long weight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s cache: %d hits, %d misses, %d evictions, "
+                + "%d objects, %d of %d KiB", name, hits, misses, evictions,
+                slots.size(), weight >> 10, capacity >> 10);
+    }
+
+    /** Returns the total size of the caches given by SIZE, the value of
+     *  core.cacheSize. */
+    static long parseSize(String size) {
+        try {
+            long result = Long.parseLong(size);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            //reported below
+        }
+        throw Utils.error("%s must be a number of bytes.", Config.CACHE_SIZE);
+    }
+
+    /** Returns the estimated weight of commit C. */
+    private static long weigh(Commit c) {
+        long w = 128 + 2L * (c.message.length() + c.timestamp.length());
+        w += (long) ENTRY_WEIGHT * c.blobs.size();
+        if (c.isFlattened()) {
+            w += (long) ENTRY_WEIGHT * c.files().size();
+        }
+        return w;
+    }
+
+    /** Returns the estimated weight of tree T. */
+    private static long weigh(Tree t) {
+        return 64 + (long) ENTRY_WEIGHT * (t.files.size() + t.dirs.size());
+    }
+
+    /** Returns the estimated weight of blob B. */
+    private static long weigh(Blob b) {
+        return 128 + 2L * b.fileName.length() + b.content.length;
+    }
+
+    /** A cached object and its weight. */
+    private static class Slot<V> {
+        /** Holds VALUE, of weight WEIGHT. */
+        Slot(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        /** The object. */
+        final V value;
+        /** Its weight. */
+        final long weight;
+    }
+
+    /** Name of this cache, for reports. */
+    private final String name;
+    /** Greatest total weight of the objects cached. */
+    private long capacity;
+    /** Weighs objects. */
+    private final ToLongFunction<V> weigher;
+    /** Cached objects, least recently used first. */
+    private final LinkedHashMap<String, Slot<V>> slots =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Total weight of the objects cached. */
+    private long weight;
+    /** Counts of lookups that hit and missed, and of evictions. */
+    private long hits, misses, evictions;
+}
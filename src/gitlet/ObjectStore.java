@@ -0,0 +1,518 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+
+/** Reading and writing of blob contents in .gitlet without holding whole
+ *  files in memory.  Content always moves through a fixed-size buffer, or
+ *  is copied from file to file by the operating system, so adding or
+ *  checking out a file takes the same heap whatever its size.
+ *
+ *  A loose blob file is BLOB_MAGIC, the file name, the content length and
+ *  then the raw content.  When storage.compression names a codec, it is
+ *  instead COMPRESSED_MAGIC, the name and length, the codec id and then
+ *  the compressed content.  When the repository has storage.chunking set, it
+ *  is instead CHUNKED_MAGIC, the file name and length, and then the id and
+ *  length of each chunk of the content; the chunks themselves are kept once
+ *  each in .gitlet/.chunks, named by the SHA-1 of their bytes.  Loose blobs
+ *  written by older versions of Gitlet are serialized Blob objects and are
+ *  still read.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class ObjectStore {
+
+    /** Marks a loose blob file in the streamed format. */
+    private static final int BLOB_MAGIC = 0x47424c42;
+    /** Marks a loose blob file that lists the chunks of its content. */
+    private static final int CHUNKED_MAGIC = 0x47424c43;
+    /** Marks a loose blob file whose content is compressed. */
+    private static final int COMPRESSED_MAGIC = 0x47424c5a;
+    /** First two bytes of a Java-serialized object. */
+    private static final int SERIAL_MAGIC = 0xaced;
+    /** Size of the buffer content is copied through. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Returns the blob id of the current contents of FILE under the name
+     *  NAME: the SHA-1 of the content followed by NAME, as Utils.sha1
+     *  would compute it. */
+    static String hash(File file, String name) {
+        long start = Trace.start();
+        MessageDigest md = sha1Digest();
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                md.update(buf, 0, n);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+        Trace.HASH.add(start, file.length());
+        return hex(md.digest());
+    }
+
+    /** Copies the contents of working file SRC, as the blob for file NAME,
+     *  into .gitlet/.blobs, hashing them as they are copied, and returns
+     *  the blob id of the contents stored.  That is the id of the bytes
+     *  actually copied, even if SRC changed after it was last hashed.  A
+     *  blob already stored is left as it is. */
+    static String storeBlob(File src, String name) {
+        long start = Trace.start();
+        MessageDigest md = sha1Digest();
+        long size = src.length();
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(".blob", ".tmp", Main.GITLET_FOLDER);
+            try (InputStream in = new DigestInputStream(new FileInputStream(src), md)) {
+                writeTo(in, name, size, Config.isSet(Config.CHUNKING), tmp);
+            }
+        } catch (IOException excp) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+        String sha = hex(md.digest());
+        File dest = Utils.join(Main.BLOBS_FOLDER, sha);
+        if (dest.exists() || Pack.contains(sha)) {
+            tmp.delete();
+        } else {
+            move(tmp, dest);
+            Journal.wrote(dest);
+        }
+        Trace.WRITE.add(start, size);
+        return sha;
+    }
+
+    /** Copies the contents of working file SRC, as the blob for file NAME,
+     *  into the loose blob file DEST.  DEST appears only once it is
+     *  complete. */
+    static void writeBlob(File src, String name, File dest) {
+        try (InputStream in = new FileInputStream(src)) {
+            write(in, name, src.length(), Config.isSet(Config.CHUNKING), dest);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes blob B, whose content is loaded, into the loose blob file
+     *  DEST. */
+    static void writeBlob(Blob b, File dest) {
+        write(new ByteArrayInputStream(b.content), b.fileName, b.content.length, false, dest);
+    }
+
+    /** Writes the SIZE bytes read from IN, the content of file NAME, into
+     *  the loose blob file DEST, as writeTo does. */
+    private static void write(InputStream in, String name, long size, boolean chunked,
+                              File dest) {
+        long start = Trace.start();
+        File tmp = new File(dest.getPath() + ".tmp");
+        try {
+            writeTo(in, name, size, chunked, tmp);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        move(tmp, dest);
+        Journal.wrote(dest);
+        Trace.WRITE.add(start, size);
+    }
+
+    /** Writes the SIZE bytes read from IN, the content of file NAME, to
+     *  the file TMP as a loose blob: split into chunks, of which only those
+     *  not already in .gitlet/.chunks are stored, if CHUNKED, and otherwise
+     *  compressed as this repository is configured to. */
+    private static void writeTo(InputStream in, String name, long size, boolean chunked,
+                                File tmp) throws IOException {
+        if (chunked) {
+            writeChunked(in, name, size, tmp);
+            return;
+        }
+        Compression codec = Compression.configured();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp), bufferSize(size + name.length() + 64)))) {
+            out.writeInt(codec == Compression.NONE ? BLOB_MAGIC : COMPRESSED_MAGIC);
+            out.writeUTF(name);
+            out.writeLong(size);
+            if (codec != Compression.NONE) {
+                out.writeByte(codec.id);
+            }
+            try (OutputStream body = codec.compress(out)) {
+                copy(in, body, size);
+            }
+        }
+    }
+
+    /** As for writeTo, for a chunked blob. */
+    private static void writeChunked(InputStream in, String name, long size, File tmp)
+        throws IOException {
+        Main.CHUNKS_FOLDER.mkdir();
+        try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(CHUNKED_MAGIC);
+            out.writeUTF(name);
+            out.writeLong(size);
+            byte[] buf = new byte[2 * Chunker.MAX_CHUNK];
+            int have = 0;
+            long left = size;
+            while (true) {
+                while (left > 0 && have < buf.length) {
+                    int n = in.read(buf, have, (int) Math.min(buf.length - have, left));
+                    if (n < 0) {
+                        throw new IOException("file changed while being copied");
+                    }
+                    have += n;
+                    left -= n;
+                }
+                if (have == 0) {
+                    break;
+                }
+                int len = Chunker.cut(buf, 0, have, left == 0);
+                out.write(writeChunk(buf, len));
+                out.writeInt(len);
+                System.arraycopy(buf, len, buf, 0, have - len);
+                have -= len;
+            }
+        }
+    }
+
+    /** Stores the first LEN bytes of DATA as a chunk unless an identical
+     *  chunk is already stored, and returns the chunk's id. */
+    private static byte[] writeChunk(byte[] data, int len) throws IOException {
+        MessageDigest md = sha1Digest();
+        md.update(data, 0, len);
+        byte[] id = md.digest();
+        File f = Utils.join(Main.CHUNKS_FOLDER, hex(id));
+        if (!f.exists()) {
+            //blobs may be written in parallel, and may share chunks
+            File tmp = File.createTempFile(f.getName(), ".tmp", Main.CHUNKS_FOLDER);
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(data, 0, len);
+            }
+            move(tmp, f);
+            Journal.wrote(f);
+        }
+        return id;
+    }
+
+    /** Copies the chunks listed in the rest of the chunked blob IN to
+     *  OUT. */
+    private static void copyChunks(DataInputStream in, FileChannel out)
+        throws IOException {
+        byte[] id = new byte[Utils.UID_LENGTH / 2];
+        for (int b = in.read(); b >= 0; b = in.read()) {
+            id[0] = (byte) b;
+            in.readFully(id, 1, id.length - 1);
+            int len = in.readInt();
+            File chunk = Utils.join(Main.CHUNKS_FOLDER, hex(id));
+            try (FileChannel chunkIn = FileChannel.open(chunk.toPath(),
+                    StandardOpenOption.READ)) {
+                transfer(chunkIn, 0, len, out);
+            }
+        }
+    }
+
+    /** Reads the chunks listed in the rest of the chunked blob IN into
+     *  CONTENT. */
+    private static void readChunks(DataInputStream in, byte[] content)
+        throws IOException {
+        byte[] id = new byte[Utils.UID_LENGTH / 2];
+        int pos = 0;
+        for (int b = in.read(); b >= 0; b = in.read()) {
+            id[0] = (byte) b;
+            in.readFully(id, 1, id.length - 1);
+            int len = in.readInt();
+            File chunk = Utils.join(Main.CHUNKS_FOLDER, hex(id));
+            try (DataInputStream chunkIn = new DataInputStream(new FileInputStream(chunk))) {
+                chunkIn.readFully(content, pos, len);
+            }
+            pos += len;
+        }
+    }
+
+    /** Moves the object file SRC to DEST, replacing DEST if present. */
+    static void move(File src, File dest) {
+        try {
+            Files.move(src.toPath(), dest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the blob stored in loose blob file F, content included. */
+    static Blob readBlob(File f) {
+        if (isSerialized(f)) {
+            return Utils.readObject(f, Blob.class);
+        }
+        long start = Trace.start();
+        try (Loose blob = new Loose(f)) {
+            if (blob.size > Integer.MAX_VALUE - 8) {
+                throw Utils.error("Blob %s is too large to load.", f.getName());
+            }
+            byte[] content = new byte[(int) blob.size];
+            if (blob.magic == CHUNKED_MAGIC) {
+                readChunks(blob.in, content);
+            } else {
+                new DataInputStream(blob.body).readFully(content);
+            }
+            Trace.READ.add(start, content.length);
+            return new Blob(blob.name, content);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns a stream of the content of the blob named SHA, read a
+     *  buffer at a time where the blob is loose, compressed or chunked.
+     *  Blobs in packs and those in the old format are loaded whole. */
+    static InputStream open(String sha) {
+        File f = Utils.join(Main.BLOBS_FOLDER, sha);
+        if (!f.exists() || isSerialized(f)) {
+            return new ByteArrayInputStream(Main.fromShaB(sha).content);
+        }
+        try {
+            Loose blob = new Loose(f);
+            if (blob.magic != CHUNKED_MAGIC) {
+                return blob.body;
+            }
+            Enumeration<InputStream> chunks = new Enumeration<>() {
+                @Override
+                public boolean hasMoreElements() {
+                    try {
+                        blob.in.mark(1);
+                        boolean more = blob.in.read() >= 0;
+                        blob.in.reset();
+                        return more;
+                    } catch (IOException excp) {
+                        throw new IllegalArgumentException(excp.getMessage());
+                    }
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    byte[] id = new byte[Utils.UID_LENGTH / 2];
+                    try {
+                        blob.in.readFully(id);
+                        blob.in.readInt();
+                        return new BufferedInputStream(new FileInputStream(
+                                Utils.join(Main.CHUNKS_FOLDER, hex(id))), BUFFER_SIZE);
+                    } catch (IOException excp) {
+                        throw new IllegalArgumentException(excp.getMessage());
+                    }
+                }
+            };
+            return new SequenceInputStream(chunks) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    blob.close();
+                }
+            };
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the name of the file whose blob is stored in loose blob
+     *  file F, reading only its header where possible. */
+    static String nameOf(File f) {
+        if (isSerialized(f)) {
+            return readBlob(f).fileName;
+        }
+        try (Loose blob = new Loose(f)) {
+            return blob.name;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the content length of the blob in loose blob file F,
+     *  reading only its header where possible. */
+    static long sizeOf(File f) {
+        if (isSerialized(f)) {
+            return readBlob(f).content.length;
+        }
+        try (Loose blob = new Loose(f)) {
+            return blob.size;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the content of the blob named SHA to the working file
+     *  DEST.  Content stored as it is, loose, chunked or in a pack, is
+     *  handed to the operating system to copy, and never passes through
+     *  the heap; compressed content is streamed. */
+    static void checkout(String sha, File dest) {
+        long start = Trace.start();
+        File f = Utils.join(Main.BLOBS_FOLDER, sha);
+        if (!f.exists()) {
+            if (!Pack.checkout(sha, dest)) {
+                throw Utils.error("Missing blob %s.", sha);
+            }
+            Trace.CHECKOUT.add(start, dest.length());
+            return;
+        }
+        boolean serialized = false;
+        try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            //unbuffered, so that the channel is left just past the header
+            DataInputStream header = new DataInputStream(Channels.newInputStream(in));
+            int magic = header.readInt();
+            if (magic >>> 16 == SERIAL_MAGIC) {
+                serialized = true;
+            } else if (magic == BLOB_MAGIC || magic == CHUNKED_MAGIC
+                    || magic == COMPRESSED_MAGIC) {
+                header.readUTF();
+                long size = header.readLong();
+                if (magic == BLOB_MAGIC) {
+                    transfer(in, in.position(), size, out);
+                } else if (magic == CHUNKED_MAGIC) {
+                    copyChunks(new DataInputStream(new BufferedInputStream(
+                            Channels.newInputStream(in), BUFFER_SIZE)), out);
+                } else {
+                    Compression codec = Compression.byId(header.readByte());
+                    try (InputStream body = codec.decompress(new BufferedInputStream(
+                            Channels.newInputStream(in), BUFFER_SIZE))) {
+                        copy(body, Channels.newOutputStream(out), size);
+                    }
+                }
+            } else {
+                throw Utils.error("Corrupt blob %s.", f.getName());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (serialized) {
+            Utils.writeContents(dest, Main.fromShaB(sha).content);
+        }
+        Trace.CHECKOUT.add(start, dest.length());
+    }
+
+    /** Copies LEN bytes of IN, from offset POS on, to OUT. */
+    private static void transfer(FileChannel in, long pos, long len, FileChannel out)
+        throws IOException {
+        while (len > 0) {
+            long n = in.transferTo(pos, len, out);
+            if (n <= 0) {
+                throw new IOException("file changed while being copied");
+            }
+            pos += n;
+            len -= n;
+        }
+    }
+
+    /** Copies exactly LEN bytes from IN to OUT. */
+    static void copy(InputStream in, OutputStream out, long len)
+        throws IOException {
+        byte[] buf = new byte[bufferSize(len)];
+        while (len > 0) {
+            int n = in.read(buf, 0, (int) Math.min(buf.length, len));
+            if (n < 0) {
+                throw new IOException("file changed while being copied");
+            }
+            out.write(buf, 0, n);
+            len -= n;
+        }
+    }
+
+    /** Returns the size of buffer to copy LEN bytes through: no more
+     *  than BUFFER_SIZE, and no more than a small file needs. */
+    private static int bufferSize(long len) {
+        return (int) Math.max(1, Math.min(BUFFER_SIZE, len));
+    }
+
+    /** An open loose blob file whose header has been read. */
+    private static class Loose implements Closeable {
+        /** Opens F and reads its header. */
+        Loose(File f) throws IOException {
+            in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(f), BUFFER_SIZE));
+            magic = in.readInt();
+            if (magic != BLOB_MAGIC && magic != CHUNKED_MAGIC
+                    && magic != COMPRESSED_MAGIC) {
+                in.close();
+                throw Utils.error("Corrupt blob %s.", f.getName());
+            }
+            name = in.readUTF();
+            size = in.readLong();
+            Compression codec = Compression.NONE;
+            if (magic == COMPRESSED_MAGIC) {
+                codec = Compression.byId(in.readByte());
+            }
+            body = codec.decompress(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+
+        /** The file, just past the header. */
+        private final DataInputStream in;
+        /** Format, file name and content length from the header. */
+        private final int magic;
+        private final String name;
+        private final long size;
+        /** The content, decompressed.  Unused for chunked blobs. */
+        private final InputStream body;
+    }
+
+    /** Returns the first four bytes of F as a big-endian int. */
+    private static int magicOf(File f) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            return in.readInt();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true iff F holds a Java-serialized object. */
+    static boolean isSerialized(File f) {
+        return magicOf(f) >>> 16 == SERIAL_MAGIC;
+    }
+
+    /** Returns true iff loose blob file F lists chunks rather than holding
+     *  its content. */
+    static boolean isChunked(File f) {
+        return magicOf(f) == CHUNKED_MAGIC;
+    }
+
+    /** Returns a new SHA-1 message digest. */
+    static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns DIGEST as a hexadecimal numeral. */
+    static String hex(byte[] digest) {
+        return Pack.toHex(digest, 0);
+    }
+}
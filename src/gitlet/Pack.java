@@ -0,0 +1,512 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/** A pack file holding many blobs, together with the index used to find
+ *  them.  Blobs that look like other versions of the same file are stored
+ *  as deltas against an earlier entry of the pack, so a pack costs roughly
+ *  one full copy of each file plus its edits.
+ *
+ *  A pack is the pair .gitlet/.packs/pack-ID.pack and pack-ID.idx.  The
+ *  pack is a header followed by entries, each of which is
+ *      type (FULL or DELTA), file name, [base offset,] length, data
+ *  where the base offset of a DELTA points at another entry of the same
+ *  pack.  The index holds a 256-entry fan-out table over the first byte of
+ *  the blob ids, then the sorted ids and the offset of each entry.
+ *
+ *  Packs are read through memory maps rather than by copying entries
+ *  into buffers.  A map cannot span more than 2 GiB, so a pack is mapped
+ *  in windows that start every MAP_WINDOW bytes and reach OVERLAP bytes
+ *  into the next one; no entry is longer than OVERLAP, so each lies
+ *  wholly in the window it starts in.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Pack {
+
+    /** Magic numbers at the start of pack and index files. */
+    private static final int PACK_MAGIC = 0x47504b31, IDX_MAGIC = 0x47494431;
+    /** Entry types. */
+    private static final int FULL = 1, DELTA = 2;
+    /** Longest chain of deltas a read may have to follow. */
+    static final int MAX_DEPTH = 10;
+    /** Number of preceding versions of a file tried as delta bases. */
+    static final int WINDOW = 10;
+    /** Blobs larger than this stay loose rather than being packed. */
+    static final long BIG_FILE_THRESHOLD = 64L << 20;
+    /** Length of a SHA-1 id in bytes. */
+    private static final int ID_BYTES = Utils.UID_LENGTH / 2;
+    /** Distance between the starts of the windows a pack is mapped in. */
+    private static final long MAP_WINDOW = 1L << 30;
+    /** How far each window reaches past the start of the next. */
+    private static final long OVERLAP = BIG_FILE_THRESHOLD + (1 << 20);
+    /** Digits of hexadecimal numerals. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The pack data file. */
+    private final File packFile;
+    /** FANOUT[b] is the number of ids whose first byte is <= b. */
+    private final int[] fanout = new int[256];
+    /** The sorted ids of this pack, ID_BYTES each. */
+    private final byte[] ids;
+    /** OFFSETS[i] is the offset of the entry for the i-th id. */
+    private final long[] offsets;
+    /** The pack data file mapped into memory, once it is needed. */
+    private MappedByteBuffer[] windows;
+
+    /** Packs of this repository, loaded on first use. */
+    private static List<Pack> packs;
+
+    /** Reads the index IDXFILE of the pack in PACKFILE. */
+    private Pack(File packFile, File idxFile) {
+        this.packFile = packFile;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(idxFile)))) {
+            if (in.readInt() != IDX_MAGIC) {
+                throw Utils.error("Corrupt pack index %s.", idxFile);
+            }
+            for (int i = 0; i < fanout.length; i += 1) {
+                fanout[i] = in.readInt();
+            }
+            int count = fanout[255];
+            ids = new byte[count * ID_BYTES];
+            in.readFully(ids);
+            offsets = new long[count];
+            for (int i = 0; i < count; i += 1) {
+                offsets[i] = in.readLong();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the packs in .gitlet/.packs. */
+    static synchronized List<Pack> all() {
+        if (packs == null) {
+            packs = new ArrayList<>();
+            List<String> names = Utils.plainFilenamesIn(Main.PACKS_FOLDER);
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".pack")) {
+                        String base = name.substring(0, name.length() - 5);
+                        packs.add(new Pack(Utils.join(Main.PACKS_FOLDER, name),
+                                Utils.join(Main.PACKS_FOLDER, base + ".idx")));
+                    }
+                }
+            }
+        }
+        return packs;
+    }
+
+    /** Forgets the loaded pack indexes, so that packs added or removed
+     *  since are seen. */
+    static synchronized void reset() {
+        packs = null;
+    }
+
+    /** Returns the blob named SHA from whichever pack holds it, or null
+     *  if no pack does. */
+    static Blob find(String sha) {
+        long start = Trace.start();
+        byte[] id = toBytes(sha);
+        for (Pack p : all()) {
+            int i = p.indexOf(id);
+            if (i >= 0) {
+                Blob b = p.readAt(p.offsets[i], 0);
+                Trace.READ.add(start, b.content.length);
+                return b;
+            }
+        }
+        return null;
+    }
+
+    /** Returns true iff some pack holds the blob named SHA. */
+    static boolean contains(String sha) {
+        byte[] id = toBytes(sha);
+        for (Pack p : all()) {
+            if (p.indexOf(id) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Writes the content of the blob named SHA to the working file DEST
+     *  and returns true, or returns false if no pack holds it.  The
+     *  content of an entry stored in full goes straight from the map of
+     *  the pack to DEST. */
+    static boolean checkout(String sha, File dest) {
+        byte[] id = toBytes(sha);
+        for (Pack p : all()) {
+            int i = p.indexOf(id);
+            if (i < 0) {
+                continue;
+            }
+            ByteBuffer in = p.at(p.offsets[i]);
+            if (in.get() != FULL) {
+                Utils.writeContents(dest, Main.fromShaB(sha).content);
+                return true;
+            }
+            int nameLength = in.getShort() & 0xffff;
+            in.position(in.position() + nameLength);
+            int len = in.getInt();
+            in.limit(in.position() + len);
+            try (FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (in.hasRemaining()) {
+                    out.write(in);
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Returns the ids of all blobs in this pack. */
+    List<String> ids() {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < offsets.length; i += 1) {
+            result.add(toHex(ids, i * ID_BYTES));
+        }
+        return result;
+    }
+
+    /** Returns the position of ID in this pack's index, or -1. */
+    private int indexOf(byte[] id) {
+        int first = id[0] & 0xff;
+        int lo = first == 0 ? 0 : fanout[first - 1];
+        int hi = fanout[first] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Arrays.compareUnsigned(ids, mid * ID_BYTES,
+                    (mid + 1) * ID_BYTES, id, 0, ID_BYTES);
+            if (c == 0) {
+                return mid;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Reads the entry at OFFSET, which is DEPTH deltas away from the
+     *  entry originally asked for. */
+    private Blob readAt(long offset, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw Utils.error("Delta chain too long in %s.", packFile);
+        }
+        ByteBuffer in = at(offset);
+        int type = in.get();
+        byte[] utf = new byte[2 + (in.getShort(in.position()) & 0xffff)];
+        in.get(utf);
+        String name;
+        try {
+            name = new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt pack %s.", packFile);
+        }
+        long baseOffset = type == DELTA ? in.getLong() : -1;
+        byte[] data = new byte[in.getInt()];
+        in.get(data);
+        if (type == DELTA) {
+            data = Delta.apply(readAt(baseOffset, depth + 1).content, data);
+        }
+        return new Blob(name, data);
+    }
+
+    /** Returns a buffer over the pack whose position is at OFFSET, which
+     *  starts an entry, mapping the pack first if need be. */
+    private ByteBuffer at(long offset) {
+        synchronized (this) {
+            if (windows == null) {
+                try (FileChannel ch = FileChannel.open(packFile.toPath(),
+                        StandardOpenOption.READ)) {
+                    long size = ch.size();
+                    MappedByteBuffer[] w =
+                        new MappedByteBuffer[(int) ((size + MAP_WINDOW - 1) / MAP_WINDOW)];
+                    for (int i = 0; i < w.length; i += 1) {
+                        long start = i * MAP_WINDOW;
+                        w[i] = ch.map(FileChannel.MapMode.READ_ONLY, start,
+                                Math.min(MAP_WINDOW + OVERLAP, size - start));
+                    }
+                    windows = w;
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        ByteBuffer result = windows[(int) (offset / MAP_WINDOW)].duplicate();
+        result.position((int) (offset % MAP_WINDOW));
+        return result;
+    }
+
+    /** Writes all loose blobs up to BIG_FILE_THRESHOLD bytes and all blobs
+     *  of existing packs into a single new pack, then removes the loose
+     *  files and the old packs.  Chunked blobs are already deduplicated
+     *  and stay loose.  The new pack and its index are on disk before
+     *  anything is removed, so a crash loses no blob. */
+    static void repack() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<String> loose = new ArrayList<>();
+        for (String sha : Utils.plainFilenamesIn(Main.BLOBS_FOLDER)) {
+            File f = Utils.join(Main.BLOBS_FOLDER, sha);
+            long size = ObjectStore.sizeOf(f);
+            if (size <= BIG_FILE_THRESHOLD && !ObjectStore.isChunked(f)) {
+                loose.add(sha);
+                entries.add(new Entry(sha, ObjectStore.nameOf(f), size));
+            }
+        }
+        HashSet<String> seen = new HashSet<>(loose);
+        for (Pack p : all()) {
+            for (String sha : p.ids()) {
+                if (seen.add(sha)) {
+                    Blob b = find(sha);
+                    entries.add(new Entry(sha, b.fileName, b.content.length));
+                }
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        //versions of one file sit next to each other, largest first, so
+        //that smaller versions are expressed as deltas against larger ones
+        entries.sort(Comparator.comparing((Entry e) -> e.name)
+                .thenComparing(e -> -e.size).thenComparing(e -> e.sha));
+
+        String packId = Utils.sha1(namesOf(entries));
+        File packFile = Utils.join(Main.PACKS_FOLDER, "pack-" + packId + ".pack");
+        File idxFile = Utils.join(Main.PACKS_FOLDER, "pack-" + packId + ".idx");
+        File tmp = Utils.join(Main.PACKS_FOLDER, "tmp-" + packId);
+        Main.PACKS_FOLDER.mkdir();
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                writeDeltified(out, entries);
+            }
+            writeIndex(idxFile, entries);
+            Files.move(tmp.toPath(), packFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException excp) {
+            tmp.delete();
+            throw excp;
+        }
+        Journal.force(List.of(packFile, idxFile, Main.PACKS_FOLDER));
+
+        for (Pack p : all()) {
+            if (!p.packFile.equals(packFile)) {
+                delete(p.packFile);
+            }
+        }
+        for (String sha : loose) {
+            Utils.join(Main.BLOBS_FOLDER, sha).delete();
+        }
+        packs = null;
+    }
+
+    /** Writes to OUT a pack of ENTRIES, in order, each version of a file
+     *  stored as a delta against a larger version near it where that is
+     *  much smaller, and sets the offset of each. */
+    private static void writeDeltified(DataOutputStream out, List<Entry> entries)
+        throws IOException {
+        out.writeInt(PACK_MAGIC);
+        out.writeInt(entries.size());
+        long offset = 8;
+        LinkedList<Entry> window = new LinkedList<>();
+        for (Entry e : entries) {
+            Blob b = Main.fromShaB(e.sha);
+            if (!window.isEmpty() && !window.getFirst().name.equals(e.name)) {
+                window.clear();
+            }
+            Entry base = null;
+            byte[] data = b.content;
+            for (Entry w : window) {
+                if (w.depth < MAX_DEPTH) {
+                    byte[] delta = Delta.create(w.content, b.content);
+                    if (delta.length < data.length && delta.length < b.content.length / 2) {
+                        base = w;
+                        data = delta;
+                    }
+                }
+            }
+            e.offset = offset;
+            e.depth = base == null ? 0 : base.depth + 1;
+            byte[] entry = encode(e.name, base, data);
+            out.write(entry);
+            offset += entry.length;
+            e.content = b.content;
+            window.addFirst(e);
+            if (window.size() > WINDOW) {
+                window.removeLast().content = null;
+            }
+        }
+    }
+
+    /** Writes BLOBS, whose contents are loaded and which are no larger
+     *  than BIG_FILE_THRESHOLD, into a new pack, each in full.  This is how
+     *  fast-import stores its blobs: a file per blob would cost far more
+     *  than writing them.  The pack is noted in the journal, and a later
+     *  repack folds it into the others.  Returns the pack file. */
+    static File write(List<Blob> blobs) throws IOException {
+        long start = Trace.start();
+        List<Entry> entries = new ArrayList<>();
+        for (Blob b : blobs) {
+            entries.add(new Entry(b.shaName, b.fileName, b.content.length));
+        }
+        String packId = Utils.sha1(namesOf(entries));
+        File packFile = Utils.join(Main.PACKS_FOLDER, "pack-" + packId + ".pack");
+        File idxFile = Utils.join(Main.PACKS_FOLDER, "pack-" + packId + ".idx");
+        File tmp = Utils.join(Main.PACKS_FOLDER, "tmp-" + packId);
+        Main.PACKS_FOLDER.mkdir();
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+                out.writeInt(PACK_MAGIC);
+                out.writeInt(entries.size());
+                long offset = 8;
+                for (int i = 0; i < blobs.size(); i += 1) {
+                    Blob b = blobs.get(i);
+                    byte[] entry = encode(b.fileName, null, b.content);
+                    entries.get(i).offset = offset;
+                    out.write(entry);
+                    offset += entry.length;
+                }
+            }
+            writeIndex(idxFile, entries);
+            Files.move(tmp.toPath(), packFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException excp) {
+            tmp.delete();
+            throw excp;
+        }
+        Journal.wrote(idxFile);
+        Journal.wrote(packFile);
+        reset();
+        Trace.WRITE.add(start, packFile.length());
+        return packFile;
+    }
+
+    /** Deletes the pack in PACKFILE and its index. */
+    static void delete(File packFile) {
+        String name = packFile.getName();
+        packFile.delete();
+        Utils.join(packFile.getParentFile(), name.substring(0, name.length() - 5) + ".idx")
+            .delete();
+        reset();
+    }
+
+    /** Returns the pack entry for a blob NAME whose DATA is either its full
+     *  content or, if BASE is not null, a delta against BASE. */
+    private static byte[] encode(String name, Entry base, byte[] data)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(base == null ? FULL : DELTA);
+        out.writeUTF(name);
+        if (base != null) {
+            out.writeLong(base.offset);
+        }
+        out.writeInt(data.length);
+        out.write(data);
+        return bytes.toByteArray();
+    }
+
+    /** Writes the index of ENTRIES, whose offsets are known, to IDXFILE. */
+    private static void writeIndex(File idxFile, List<Entry> entries)
+        throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(e -> e.sha));
+        int[] fanout = new int[256];
+        for (Entry e : sorted) {
+            fanout[Integer.parseInt(e.sha.substring(0, 2), 16)] += 1;
+        }
+        for (int i = 1; i < fanout.length; i += 1) {
+            fanout[i] += fanout[i - 1];
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(idxFile)))) {
+            out.writeInt(IDX_MAGIC);
+            for (int f : fanout) {
+                out.writeInt(f);
+            }
+            for (Entry e : sorted) {
+                out.write(toBytes(e.sha));
+            }
+            for (Entry e : sorted) {
+                out.writeLong(e.offset);
+            }
+        }
+    }
+
+    /** Returns the ids of ENTRIES, in order. */
+    private static List<Object> namesOf(List<Entry> entries) {
+        List<Object> result = new ArrayList<>();
+        for (Entry e : entries) {
+            result.add(e.sha);
+        }
+        return result;
+    }
+
+    /** Returns the bytes denoted by the hexadecimal numeral HEX. */
+    static byte[] toBytes(String hex) {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) (Character.digit(hex.charAt(2 * i), 16) << 4
+                    | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return result;
+    }
+
+    /** Returns the ID_BYTES bytes of DATA at START as a hexadecimal
+     *  numeral. */
+    static String toHex(byte[] data, int start) {
+        char[] result = new char[2 * ID_BYTES];
+        for (int i = 0; i < ID_BYTES; i += 1) {
+            result[2 * i] = HEX_DIGITS[(data[start + i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[data[start + i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** A blob on its way into a new pack. */
+    private static class Entry {
+        /** An entry for blob SHA of file NAME, with SIZE bytes of
+         *  content. */
+        Entry(String sha, String name, long size) {
+            this.sha = sha;
+            this.name = name;
+            this.size = size;
+        }
+
+        /** Blob id, file name and content length. */
+        private final String sha, name;
+        private final long size;
+        /** Content, kept only while this entry is in the delta window. */
+        private byte[] content;
+        /** Position in the new pack and length of its delta chain. */
+        private long offset;
+        private int depth;
+    }
+}
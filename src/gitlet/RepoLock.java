@@ -0,0 +1,84 @@
+package gitlet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** The lock a command holds while it changes a repository, so that
+ *  commands run by different processes at once never read the staging
+ *  area or refs, change them and write them back over each other's
+ *  changes.  It is an exclusive lock on .gitlet/.lock, which the
+ *  operating system drops if its holder dies, and within one process
+ *  it is also a ReentrantLock, since a process may not lock a file
+ *  twice.
+ *
+ *  Commands that only read take no lock.  Objects never change once
+ *  written, and every other file is replaced whole by a rename, so a
+ *  reader sees each file either before or after a change.  A reader
+ *  that runs while a writer is carrying out its journal, or after one
+ *  was cut short, may see some of that command's changes and not
+ *  others; the next writer finishes them.
+ *
+ *  The staging area and all refs are shared by every command that
+ *  changes anything (the branches are a single map), so there is one
+ *  lock for the whole repository rather than one per ref.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class RepoLock implements Closeable {
+
+    /** The file locked. */
+    private static final File LOCK = Utils.join(Main.GITLET_FOLDER, ".lock");
+    /** Held by the thread of this process that holds the file lock. */
+    private static final ReentrantLock HELD = new ReentrantLock();
+
+    /** Returns the lock of this repository, waiting until no other
+     *  process or thread holds it. */
+    static RepoLock acquire() {
+        HELD.lock();
+        try {
+            FileChannel channel = FileChannel.open(LOCK.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                return new RepoLock(channel, channel.lock());
+            } catch (IOException excp) {
+                channel.close();
+                throw excp;
+            }
+        } catch (IOException excp) {
+            HELD.unlock();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true iff the current thread holds the lock. */
+    static boolean isHeld() {
+        return HELD.isHeldByCurrentThread();
+    }
+
+    /** A lock held through LOCK, on CHANNEL. */
+    private RepoLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            HELD.unlock();
+        }
+    }
+
+    /** The open lock file. */
+    private final FileChannel channel;
+    /** The lock on it. */
+    private final FileLock lock;
+}
@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The staging area: the files staged for addition, each with the blob
+ *  id of its staged contents, and the files staged for removal, each with
+ *  the blob id it has in the head commit.
+ *
+ *  The staging area is kept in .gitlet/.stage as a log, MAGIC and then one
+ *  record per change: ADD, a path and a blob id to stage a file for
+ *  addition; REMOVE, a path and a blob id to stage it for removal; or
+ *  UNSTAGE and a path to take it out of the staging area altogether.  A
+ *  later record for a path overrides an earlier one.  Staging a file
+ *  appends one record, through the journal, and never rewrites the
+ *  records before it; commit, checkout and reset empty the log.  Reading
+ *  the staging area replays the log, so commands that only stage, such
+ *  as adding a single file, do not read it at all.
+ *
+ *  Staged contents are written straight into .gitlet/.blobs, where the
+ *  commit that takes them finds them; a blob that is unstaged again is
+ *  left there, unreferenced, since another commit may share it.
+ *  Repositories from before the log kept the staging area as two
+ *  serialized maps, .gitlet/.add and .gitlet/.rm, and the staged
+ *  contents in .gitlet/.staging; the maps are read when there is no log,
+ *  and copied into one by the first change.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Stage {
+
+    /** The log. */
+    static final File LOG = Utils.join(Main.GITLET_FOLDER, ".stage");
+    /** Magic number at the start of the log. */
+    private static final int MAGIC = 0x4753544c;
+    /** Record types. */
+    private static final int ADD = 1, REMOVE = 2, UNSTAGE = 3;
+
+    /** Returns the staging area as this command has left it. */
+    static Stage read() {
+        Stage stage = new Stage();
+        if (!Journal.exists(LOG)) {
+            stage.readOld();
+            return stage;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Journal.read(LOG)))) {
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("Corrupt staging area.");
+            }
+            while (true) {
+                int op;
+                try {
+                    op = in.readUnsignedByte();
+                } catch (EOFException excp) {
+                    break;
+                }
+                String path = in.readUTF();
+                byte[] id = new byte[Utils.UID_LENGTH / 2];
+                if (op != UNSTAGE) {
+                    in.readFully(id);
+                }
+                stage.added.remove(path);
+                stage.removed.remove(path);
+                if (op == ADD) {
+                    stage.added.put(path, Pack.toHex(id, 0));
+                } else if (op == REMOVE) {
+                    stage.removed.put(path, Pack.toHex(id, 0));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return stage;
+    }
+
+    /** Stages file PATH for addition with the contents SHA. */
+    static void add(String path, String sha) {
+        append(ADD, path, sha);
+    }
+
+    /** Stages file PATH, whose blob in the head commit is SHA, for
+     *  removal. */
+    static void remove(String path, String sha) {
+        append(REMOVE, path, sha);
+    }
+
+    /** Takes file PATH out of the staging area. */
+    static void unstage(String path) {
+        append(UNSTAGE, path, null);
+    }
+
+    /** Empties the staging area. */
+    static void clear() {
+        Journal.write(LOG, encode(Collections.emptyMap(), Collections.emptyMap()));
+    }
+
+    /** Returns the files staged for addition, mapped to their staged
+     *  blob ids. */
+    Map<String, String> added() {
+        return Collections.unmodifiableMap(added);
+    }
+
+    /** Returns the files staged for removal, mapped to their blob ids in
+     *  the head commit. */
+    Map<String, String> removed() {
+        return Collections.unmodifiableMap(removed);
+    }
+
+    /** Returns true iff nothing is staged. */
+    boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /** Appends to the log a record of type OP for PATH and blob SHA,
+     *  first creating the log if there is none. */
+    private static void append(int op, String path, String sha) {
+        if (!Journal.exists(LOG)) {
+            Stage old = new Stage();
+            old.readOld();
+            Journal.write(LOG, encode(old.added, old.removed));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            record(out, op, path, sha);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Journal.append(LOG, bytes.toByteArray());
+    }
+
+    /** Returns a log holding the files ADDED staged for addition and the
+     *  files REMOVED staged for removal. */
+    private static byte[] encode(Map<String, String> added, Map<String, String> removed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            for (Map.Entry<String, String> e : added.entrySet()) {
+                record(out, ADD, e.getKey(), e.getValue());
+            }
+            for (Map.Entry<String, String> e : removed.entrySet()) {
+                record(out, REMOVE, e.getKey(), e.getValue());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Writes to OUT a record of type OP for PATH and, unless OP is
+     *  UNSTAGE, blob SHA. */
+    private static void record(DataOutputStream out, int op, String path, String sha)
+        throws IOException {
+        out.writeByte(op);
+        out.writeUTF(path);
+        if (op != UNSTAGE) {
+            out.write(Pack.toBytes(sha));
+        }
+    }
+
+    /** Reads the staging area of a repository from before the log. */
+    @SuppressWarnings("unchecked")
+    private void readOld() {
+        if (Main.ADD_STAGE.exists()) {
+            added.putAll(Journal.readObject(Main.ADD_STAGE, HashMap.class));
+        }
+        if (Main.RM_STAGE.exists()) {
+            removed.putAll(Journal.readObject(Main.RM_STAGE, HashMap.class));
+        }
+    }
+
+    /** Files staged for addition and for removal, with their blob ids. */
+    private final HashMap<String, String> added = new HashMap<>();
+    private final HashMap<String, String> removed = new HashMap<>();
+}
@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Counts of what a command spends its time on: for each kind of work,
+ *  how many times it was done, how many bytes it involved and how long
+ *  it took, together with the hits and misses of the object caches.
+ *
+ *  Counting is on for a command run as "java gitlet.Main --trace
+ *  COMMAND ...", which prints a report to the standard error when the
+ *  command finishes, or as "--trace=FILE ...", which appends the report
+ *  to FILE as one line of JSON.  It is also on while a Java Flight
+ *  Recorder recording takes gitlet.Command events, as one started with
+ *  -XX:StartFlightRecording does, and each command then records one
+ *  gitlet.Command event and one gitlet.Operation event for each kind of
+ *  work done.  Otherwise start() and add() test one flag and return, so
+ *  counting costs nearly nothing when off.
+ *
+ *  The kinds of work do not overlap: READ counts files read whole, not
+ *  the blobs HASH reads as it hashes them, and DECODE counts the time
+ *  taken to decode objects already read.  Counts may be added from
+ *  several threads at once.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Trace {
+
+    /** Metadata and object files read whole, and loose blobs loaded. */
+    static final Trace READ = new Trace("read");
+    /** Metadata and object files written whole, and blobs stored. */
+    static final Trace WRITE = new Trace("write");
+    /** Working files written from blobs. */
+    static final Trace CHECKOUT = new Trace("checkout");
+    /** Contents hashed, working files included. */
+    static final Trace HASH = new Trace("hash");
+    /** Directories listed; the bytes are the files found. */
+    static final Trace LIST = new Trace("list");
+    /** Commits and trees decoded and Java objects deserialized. */
+    static final Trace DECODE = new Trace("decode");
+    /** Files forced to disk by the journal. */
+    static final Trace SYNC = new Trace("sync");
+
+    /** Every kind of work, in the order reported. */
+    private static final List<Trace> ALL =
+        List.of(READ, WRITE, CHECKOUT, HASH, LIST, DECODE, SYNC);
+    /** The caches reported. */
+    private static final List<ObjectCache<?>> CACHES =
+        List.of(ObjectCache.COMMITS, ObjectCache.TREES, ObjectCache.BLOBS);
+
+    /** Counts of work called NAME. */
+    private Trace(String name) {
+        this.name = name;
+    }
+
+    /** Returns the time work that is to be counted starts, or 0 if
+     *  counting is off. */
+    static long start() {
+        return on ? System.nanoTime() : 0;
+    }
+
+    /** Counts work of this kind involving BYTES bytes that started at
+     *  START, as returned by start(). */
+    void add(long start, long bytes) {
+        if (on) {
+            count.increment();
+            this.bytes.add(bytes);
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /** Starts counting for the command ARGS if it asks for a trace, or
+     *  if a flight recording wants one, and returns ARGS without the
+     *  --trace option. */
+    static String[] begin(String... args) {
+        file = null;
+        boolean asked = args.length > 0 && (args[0].equals("--trace")
+            || args[0].startsWith("--trace="));
+        if (asked) {
+            if (args[0].startsWith("--trace=")) {
+                file = args[0].substring("--trace=".length());
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        event = new CommandEvent();
+        report = asked;
+        on = asked || event.isEnabled();
+        if (on) {
+            for (Trace t : ALL) {
+                t.count.reset();
+                t.bytes.reset();
+                t.nanos.reset();
+            }
+            for (int i = 0; i < CACHES.size(); i += 1) {
+                hits[i] = CACHES.get(i).hits();
+                misses[i] = CACHES.get(i).misses();
+            }
+            event.begin();
+            began = System.nanoTime();
+        }
+        return args;
+    }
+
+    /** Stops counting for the command ARGS and reports what was
+     *  counted. */
+    static void end(String... args) {
+        if (!on) {
+            return;
+        }
+        on = false;
+        long total = System.nanoTime() - began;
+        String command = args.length == 0 ? "" : args[0];
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = String.join(" ", args);
+            event.commit();
+            for (Trace t : ALL) {
+                if (t.count.sum() > 0) {
+                    OperationEvent op = new OperationEvent();
+                    op.command = command;
+                    op.operation = t.name;
+                    op.count = t.count.sum();
+                    op.bytes = t.bytes.sum();
+                    op.time = t.nanos.sum();
+                    op.commit();
+                }
+            }
+        }
+        if (!report) {
+            return;
+        } else if (file == null) {
+            printReport(command, total, System.err);
+        } else {
+            try (OutputStream out = new FileOutputStream(file, true)) {
+                out.write((json(command, total) + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Prints the report on COMMAND, which took TOTAL ns, to OUT. */
+    private static void printReport(String command, long total, PrintStream out) {
+        out.printf("trace: %s %.3f ms%n", command, total / 1e6);
+        for (Trace t : ALL) {
+            if (t.count.sum() > 0) {
+                out.printf("  %-9s %8d times %12d bytes %10.3f ms%n", t.name,
+                    t.count.sum(), t.bytes.sum(), t.nanos.sum() / 1e6);
+            }
+        }
+        for (int i = 0; i < CACHES.size(); i += 1) {
+            out.printf("  %-9s %8d hits %13d misses%n", CACHES.get(i).name(),
+                CACHES.get(i).hits() - hits[i], CACHES.get(i).misses() - misses[i]);
+        }
+    }
+
+    /** Returns the report on COMMAND, which took TOTAL ns, as JSON. */
+    private static String json(String command, long total) {
+        StringBuilder s = new StringBuilder("{\"command\":\"");
+        for (char c : command.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                s.append('\\').append(c);
+            } else if (c < ' ') {
+                s.append(String.format("\\u%04x", (int) c));
+            } else {
+                s.append(c);
+            }
+        }
+        s.append("\",\"nanos\":").append(total);
+        for (Trace t : ALL) {
+            s.append(",\"").append(t.name).append("\":{\"count\":").append(t.count.sum())
+                .append(",\"bytes\":").append(t.bytes.sum())
+                .append(",\"nanos\":").append(t.nanos.sum()).append('}');
+        }
+        for (int i = 0; i < CACHES.size(); i += 1) {
+            s.append(",\"").append(CACHES.get(i).name()).append("\":{\"hits\":")
+                .append(CACHES.get(i).hits() - hits[i]).append(",\"misses\":")
+                .append(CACHES.get(i).misses() - misses[i]).append('}');
+        }
+        return s.append('}').toString();
+    }
+
+    /** A command, as recorded by the flight recorder. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    static class CommandEvent extends Event {
+        /** The command and its operands. */
+        @Label("Command")
+        String command;
+    }
+
+    /** One kind of work done by a command, as recorded by the flight
+     *  recorder. */
+    @Name("gitlet.Operation")
+    @Label("Gitlet Operation")
+    @Category("Gitlet")
+    static class OperationEvent extends Event {
+        /** The name of the command. */
+        @Label("Command")
+        String command;
+        /** The kind of work. */
+        @Label("Operation")
+        String operation;
+        /** Number of times it was done. */
+        @Label("Count")
+        long count;
+        /** Bytes involved. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        /** Time taken, summed over threads. */
+        @Label("Time")
+        @Timespan
+        long time;
+    }
+
+    /** True while counting is on. */
+    private static volatile boolean on;
+    /** True iff the command asked for a report. */
+    private static boolean report;
+    /** File the report is appended to, or null for the standard
+     *  error. */
+    private static String file;
+    /** The flight recorder event of the command. */
+    private static CommandEvent event;
+    /** Time the command started. */
+    private static long began;
+    /** Hits and misses of each cache before the command. */
+    private static final long[] hits = new long[CACHES.size()],
+        misses = new long[CACHES.size()];
+
+    /** Name of this kind of work. */
+    private final String name;
+    /** Times done, bytes involved and nanoseconds taken. */
+    private final LongAdder count = new LongAdder(), bytes = new LongAdder(),
+        nanos = new LongAdder();
+}
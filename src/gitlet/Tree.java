@@ -0,0 +1,214 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** One directory of a commit's files: the blob id of each file in it and
+ *  the tree id of each subdirectory.  Trees are stored in .gitlet/.trees
+ *  under the SHA-1 of their encoding, so two commits whose directories
+ *  hold the same files share the tree, and a commit that changes a few
+ *  paths writes only the trees on the way to those paths.  Paths within a
+ *  tree are separated by '/'.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class Tree {
+
+    /** Blob ids of the files in this directory, by name. */
+    final TreeMap<String, String> files = new TreeMap<>();
+    /** Tree ids of the subdirectories of this directory, by name. */
+    final TreeMap<String, String> dirs = new TreeMap<>();
+
+    /** Returns the tree stored under ID, which is shared with other
+     *  callers and must not be changed. */
+    static Tree load(String id) {
+        return ObjectCache.TREES.get(id, t ->
+            Codec.decodeTree(Utils.readContents(Utils.join(Main.TREES_FOLDER, t))));
+    }
+
+    /** Returns a tree with the same files and subdirectories as this
+     *  one. */
+    private Tree copy() {
+        Tree t = new Tree();
+        t.files.putAll(files);
+        t.dirs.putAll(dirs);
+        return t;
+    }
+
+    /** Stores this tree, if it is not already stored, and returns its
+     *  id.  The tree is cached, for the next commit to build on, and must
+     *  not be changed afterwards. */
+    String save() {
+        byte[] body = Codec.encodeTree(this);
+        String id = Utils.sha1(body);
+        File f = Utils.join(Main.TREES_FOLDER, id);
+        if (!f.exists()) {
+            Main.TREES_FOLDER.mkdir();
+            Utils.writeContents(f, Codec.sealTree(body));
+            Journal.wrote(f);
+        }
+        ObjectCache.TREES.put(id, this);
+        return id;
+    }
+
+    /** Returns the blob id of file PATH in the tree ROOT, or null if it has
+     *  no such file.  Reads only the trees along PATH. */
+    static String lookup(String root, String path) {
+        String[] parts = path.split("/");
+        String id = root;
+        for (int i = 0; i < parts.length - 1 && id != null; i += 1) {
+            id = load(id).dirs.get(parts[i]);
+        }
+        return id == null ? null : load(id).files.get(parts[parts.length - 1]);
+    }
+
+    /** Returns the blob id of file PATH, or the tree id of directory PATH,
+     *  in the tree ROOT, or null if it has neither.  Reads only the trees
+     *  along PATH. */
+    static String entry(String root, String path) {
+        String[] parts = path.split("/");
+        String id = root;
+        for (int i = 0; i < parts.length - 1 && id != null; i += 1) {
+            id = load(id).dirs.get(parts[i]);
+        }
+        if (id == null) {
+            return null;
+        }
+        Tree last = load(id);
+        String name = parts[parts.length - 1];
+        return last.files.containsKey(name) ? last.files.get(name) : last.dirs.get(name);
+    }
+
+    /** Returns a map from the path of each file in tree ROOT to its blob
+     *  id. */
+    static Map<String, String> flatten(String root) {
+        HashMap<String, String> result = new HashMap<>();
+        flatten(root, "", result);
+        return result;
+    }
+
+    /** Adds the files of tree ID to RESULT, each path prefixed by
+     *  PREFIX. */
+    private static void flatten(String id, String prefix,
+                                Map<String, String> result) {
+        Tree t = load(id);
+        for (Map.Entry<String, String> e : t.files.entrySet()) {
+            result.put(prefix + e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, String> e : t.dirs.entrySet()) {
+            flatten(e.getValue(), prefix + e.getKey() + "/", result);
+        }
+    }
+
+    /** Returns the changes that turn tree FROM into tree TO: a map from
+     *  the path of each file that differs to its blob id in TO, or to null
+     *  if TO has no such file.  Subtrees with the same id in both are
+     *  skipped without being read. */
+    static TreeMap<String, String> diff(String from, String to) {
+        TreeMap<String, String> result = new TreeMap<>();
+        diff(from, to, "", result);
+        return result;
+    }
+
+    /** Adds the changes from tree FROM to tree TO to RESULT, each path
+     *  prefixed by PREFIX.  Either tree may be null, standing for an empty
+     *  tree. */
+    private static void diff(String from, String to, String prefix,
+                             Map<String, String> result) {
+        if (from != null && from.equals(to)) {
+            return;
+        }
+        Tree a = from == null ? new Tree() : load(from);
+        Tree b = to == null ? new Tree() : load(to);
+        for (Map.Entry<String, String> e : a.files.entrySet()) {
+            if (!b.files.containsKey(e.getKey())) {
+                result.put(prefix + e.getKey(), null);
+            }
+        }
+        for (Map.Entry<String, String> e : b.files.entrySet()) {
+            if (!e.getValue().equals(a.files.get(e.getKey()))) {
+                result.put(prefix + e.getKey(), e.getValue());
+            }
+        }
+        TreeSet<String> dirs = new TreeSet<>(a.dirs.keySet());
+        dirs.addAll(b.dirs.keySet());
+        for (String dir : dirs) {
+            diff(a.dirs.get(dir), b.dirs.get(dir), prefix + dir + "/", result);
+        }
+    }
+
+    /** Returns true iff PATH is a relative path naming a file inside the
+     *  working directory: none of its components is empty, "." or "..". */
+    static boolean isSafe(String path) {
+        for (String part : path.split("/", -1)) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the id of a tree holding the files FILES, a map from path
+     *  to blob id, storing any trees that are new. */
+    static String build(Map<String, String> files) {
+        String root = update(null, new TreeMap<>(files));
+        return root == null ? new Tree().save() : root;
+    }
+
+    /** Returns the id of the tree that results from applying CHANGES to the
+     *  tree ROOT.  CHANGES maps each path to its new blob id, or to null if
+     *  the file is removed.  Only the trees along changed paths are read
+     *  and written; every other subtree keeps its id.  Directories left
+     *  empty disappear, though the root is kept even when empty.  CHANGES
+     *  is emptied. */
+    static String commit(String root, SortedMap<String, String> changes) {
+        String result = update(root, changes);
+        return result == null ? new Tree().save() : result;
+    }
+
+    /** As for commit, but returns null if the result is empty.  ROOT may
+     *  be null, standing for an empty tree. */
+    private static String update(String root, SortedMap<String, String> changes) {
+        if (changes.isEmpty()) {
+            return root;
+        }
+        Tree t = root == null ? new Tree() : load(root).copy();
+        while (!changes.isEmpty()) {
+            String path = changes.firstKey();
+            if (!isSafe(path)) {
+                throw Utils.error("Bad path: %s", path);
+            }
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                String blob = changes.remove(path);
+                if (blob == null) {
+                    t.files.remove(path);
+                } else {
+                    t.files.put(path, blob);
+                }
+                continue;
+            }
+            String dir = path.substring(0, slash);
+            //every path under dir/ sorts between "dir/" and "dir0"
+            SortedMap<String, String> under = changes.subMap(dir + "/", dir + "0");
+            TreeMap<String, String> sub = new TreeMap<>();
+            for (Map.Entry<String, String> e : under.entrySet()) {
+                sub.put(e.getKey().substring(slash + 1), e.getValue());
+            }
+            under.clear();
+            String id = update(t.dirs.get(dir), sub);
+            if (id == null) {
+                t.dirs.remove(dir);
+            } else {
+                t.dirs.put(dir, id);
+            }
+        }
+        if (t.files.isEmpty() && t.dirs.isEmpty()) {
+            return null;
+        }
+        return t.save();
+    }
+}
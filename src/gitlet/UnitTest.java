@@ -2,6 +2,24 @@ package gitlet;
 
 
 import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeSet;
+
 import static org.junit.Assert.*;
 
 /** The suite of all JUnit tests for the gitlet package.
@@ -18,4 +36,476 @@ public class UnitTest {
     public void placeholderTest() {
     }
 
-}
\ No newline at end of file
+    /** Checks that an ObjectCache drops its least recently used objects
+     *  once over its capacity, or when its capacity shrinks, and counts
+     *  what it does. */
+    @Test
+    public void objectCacheTest() {
+        ObjectCache<String> cache = new ObjectCache<>("test", 36, String::length);
+        int[] loads = new int[1];
+        java.util.function.Function<String, String> loader = id -> {
+            loads[0] += 1;
+            return id + id;
+        };
+        assertEquals("aaaa", cache.get("aaaa", loader).substring(0, 4));
+        cache.get("bbbb", loader);
+        cache.get("aaaa", loader);
+        cache.get("cccc", loader);
+        cache.get("dddd", loader);
+        cache.get("eeee", loader);
+        assertEquals(5, loads[0]);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.evictions());
+        assertEquals(32, cache.weight());
+        cache.get("aaaa", loader);
+        assertEquals(5, loads[0]);
+        cache.get("bbbb", loader);
+        assertEquals(6, loads[0]);
+        cache.get("too long", loader);
+        assertEquals(4, cache.size());
+        assertEquals(2, cache.evictions());
+        cache.resize(16);
+        assertEquals(2, cache.size());
+        assertEquals(4, cache.evictions());
+        cache.get("bbbb", loader);
+        assertEquals(7, loads[0]);
+    }
+
+    /** Checks that Merge takes changes made on one side only, keeps
+     *  identical changes once, and marks only the lines both sides
+     *  changed differently as conflicting. */
+    @Test
+    public void mergeTest() throws Exception {
+        String base = "a\nb\nc\nd\ne\nf\n";
+        assertEquals("A\nb\nc\nd\ne\nF\n", merge(base, "A\nb\nc\nd\ne\nf\n", "a\nb\nc\nd\ne\nF\n"));
+        assertEquals("a\nb\nX\nd\ne\n", merge(base, "a\nb\nX\nd\ne\nf\n", "a\nb\nX\nd\ne\n"));
+        assertEquals("a\n<<<<<<< HEAD\nB\n=======\nb2\n>>>>>>>\nc\nd\ne\nf\ng",
+                merge(base, "a\nB\nc\nd\ne\nf\n", "a\nb2\nc\nd\ne\nf\ng"));
+        assertEquals("<<<<<<< HEAD\nx\n=======\ny\n>>>>>>>\n", merge("", "x", "y\n"));
+    }
+
+    /** Checks that Merge.match finds a longest common subsequence on
+     *  random texts, by comparing its length with one found by dynamic
+     *  programming. */
+    @Test
+    public void matchTest() {
+        Random r = new Random(20);
+        for (int trial = 0; trial < 200; trial += 1) {
+            long[] a = new long[r.nextInt(60)];
+            long[] b = new long[r.nextInt(60)];
+            for (int i = 0; i < a.length; i += 1) {
+                a[i] = r.nextInt(4);
+            }
+            for (int j = 0; j < b.length; j += 1) {
+                b[j] = r.nextInt(4);
+            }
+            int[] match = Merge.match(a, b);
+            int matched = 0, last = -1;
+            for (int i = 0; i < a.length; i += 1) {
+                if (match[i] >= 0) {
+                    assertTrue(match[i] > last);
+                    assertEquals(a[i], b[match[i]]);
+                    last = match[i];
+                    matched += 1;
+                }
+            }
+            int[][] lcs = new int[a.length + 1][b.length + 1];
+            for (int i = a.length - 1; i >= 0; i -= 1) {
+                for (int j = b.length - 1; j >= 0; j -= 1) {
+                    lcs[i][j] = a[i] == b[j] ? lcs[i + 1][j + 1] + 1
+                            : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+                }
+            }
+            assertEquals(lcs[0][0], matched);
+        }
+    }
+
+    /** Returns the merge by Merge of OURS and THEIRS, both changed from
+     *  BASE. */
+    private static String merge(String base, String ours, String theirs) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Merge.merge(() -> new ByteArrayInputStream(base.getBytes()),
+                () -> new ByteArrayInputStream(ours.getBytes()),
+                () -> new ByteArrayInputStream(theirs.getBytes()), out);
+        return out.toString();
+    }
+
+    /** Checks CommitGraph.mergeBase against a brute-force search on random
+     *  histories with merges. */
+    @Test
+    public void mergeBaseTest() {
+        Random r = new Random(61);
+        for (int trial = 0; trial < 50; trial += 1) {
+            CommitGraph g = new CommitGraph();
+            int n = 2 + r.nextInt(200);
+            for (int i = 0; i < n; i += 1) {
+                int p1 = i == 0 ? CommitGraph.NONE : r.nextInt(i);
+                int p2 = i > 1 && r.nextInt(4) == 0 ? r.nextInt(i) : CommitGraph.NONE;
+                int gen = 1 + Math.max(p1 == CommitGraph.NONE ? 0 : g.generation(p1),
+                        p2 == CommitGraph.NONE ? 0 : g.generation(p2));
+                g.append(Integer.toString(i), p1, p2, gen, 0, null);
+            }
+            for (int q = 0; q < 20; q += 1) {
+                int a = r.nextInt(n);
+                int b = r.nextInt(n);
+                HashSet<Integer> common = ancestors(g, a);
+                common.retainAll(ancestors(g, b));
+                HashSet<Integer> best = new HashSet<>(common);
+                for (int c : common) {
+                    HashSet<Integer> below = ancestors(g, c);
+                    below.remove(c);
+                    best.removeAll(below);
+                }
+                int found = g.mergeBase(a, b);
+                assertTrue(best.contains(found));
+                for (int c : best) {
+                    assertTrue(g.generation(c) <= g.generation(found));
+                }
+            }
+        }
+    }
+
+    /** Runs several Gitlet processes at once, each adding and committing
+     *  files of its own, and checks that no commit or file was lost. */
+    @Test
+    public void concurrentCommitsTest() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        assertEquals("", gitlet(dir, "init"));
+        int workers = 4, rounds = 4;
+        ArrayList<Thread> threads = new ArrayList<>();
+        ArrayList<Throwable> failures = new ArrayList<>();
+        for (int w = 0; w < workers; w += 1) {
+            int id = w;
+            Thread t = new Thread(() -> {
+                try {
+                    for (int i = 0; i < rounds; i += 1) {
+                        String name = "w" + id + "_" + i + ".txt";
+                        Files.writeString(new File(dir, name).toPath(), name);
+                        gitlet(dir, "add", name);
+                        gitlet(dir, "commit", name);
+                    }
+                } catch (Throwable excp) {
+                    synchronized (failures) {
+                        failures.add(excp);
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), failures);
+
+        TreeSet<String> log = commitIds(gitlet(dir, "log"));
+        TreeSet<String> all = commitIds(gitlet(dir, "global-log"));
+        assertEquals(all, log);
+        String status = gitlet(dir, "status");
+        assertTrue(status, status.contains("=== Staged Files ===\n\n"));
+        assertTrue(status, status.endsWith("=== Untracked Files ===\n\n"));
+        for (int w = 0; w < workers; w += 1) {
+            for (int i = 0; i < rounds; i += 1) {
+                String name = "w" + w + "_" + i + ".txt";
+                assertTrue(new File(dir, name).delete());
+                assertEquals("", gitlet(dir, "checkout", "--", name));
+            }
+        }
+    }
+
+    /** Checks that each codec gives back exactly what it compressed: no
+     *  bytes, bytes that do not compress, exactly one LZ block, several
+     *  blocks, and runs long enough that matches overlap what they copy. */
+    @Test
+    public void compressionTest() throws Exception {
+        Random r = new Random(42);
+        byte[] noise = new byte[100_000];
+        r.nextBytes(noise);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 300_000; i += 1) {
+            text.append("line ").append(i % 1000).append(" of some text\n");
+        }
+        byte[] lines = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] run = new byte[200_000];
+        Arrays.fill(run, (byte) 'a');
+        byte[] pattern = new byte[150_000];
+        for (int i = 0; i < pattern.length; i += 1) {
+            pattern[i] = (byte) "abc".charAt(i % 3);
+        }
+        byte[][] inputs = {new byte[0], noise, Arrays.copyOf(lines, 1 << 16),
+            Arrays.copyOf(lines, (1 << 16) + 1), lines, run, pattern, {7}};
+        for (int id = 0; id < 3; id += 1) {
+            Compression codec = Compression.byId(id);
+            for (byte[] input : inputs) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (OutputStream out = codec.compress(bytes)) {
+                    out.write(input);
+                }
+                try (InputStream in = codec.decompress(
+                        new ByteArrayInputStream(bytes.toByteArray()))) {
+                    assertArrayEquals(codec.name + " " + input.length, input, in.readAllBytes());
+                }
+            }
+        }
+        //written a byte at a time, and read back a byte at a time
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = Compression.LZ.compress(bytes)) {
+            for (byte b : lines) {
+                out.write(b);
+            }
+        }
+        try (InputStream in = Compression.LZ.decompress(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (int i = 0; i < lines.length; i += 1) {
+                assertEquals(lines[i] & 0xff, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+        assertTrue(bytes.size() < lines.length / 4);
+    }
+
+    /** Checks that commits in each format, version 3 as written and
+     *  versions 1 and 2 as older Gitlets wrote them, and trees decode to
+     *  what was encoded, null strings included, and that formats Gitlet
+     *  does not know are refused. */
+    @Test
+    public void codecTest() throws Exception {
+        String id = Utils.sha1("commit"), parent = Utils.sha1("parent");
+        String tree = Utils.sha1("tree"), blob = Utils.sha1("blob");
+        Commit c = new Commit(id);
+        c.parent = parent;
+        c.timestamp = "Thu Jan 01 00:00:00 1970 +0000";
+        c.message = "caf\u00e9 \n message";
+        c.tree = tree;
+        Commit d = Codec.decodeCommit(Codec.encodeCommit(c));
+        assertEquals(id, d.shaName);
+        assertEquals(parent, d.parent);
+        assertNull(d.parent2);
+        assertEquals(c.timestamp, d.timestamp);
+        assertEquals(c.message, d.message);
+        assertNull(d.branch);
+        assertEquals(tree, d.treeId());
+
+        for (int version = 1; version <= 2; version += 1) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(Codec.COMMIT_MAGIC);
+            header.writeByte(version);
+            OutputStream body = bytes;
+            if (version == 2) {
+                header.writeByte(Compression.DEFLATE.id);
+                body = Compression.DEFLATE.compress(bytes);
+            }
+            DataOutputStream out = new DataOutputStream(body);
+            Codec.writeString(out, id);
+            Codec.writeString(out, null);
+            Codec.writeString(out, parent);
+            Codec.writeString(out, c.timestamp);
+            Codec.writeString(out, "");
+            Codec.writeString(out, "master");
+            HashMap<String, String> files = new HashMap<>();
+            files.put("a.txt", blob);
+            files.put("d/b.txt", parent);
+            Codec.writeTree(out, files);
+            out.close();
+            d = Codec.decodeCommit(bytes.toByteArray());
+            assertNull(d.parent);
+            assertEquals(parent, d.parent2);
+            assertEquals("", d.message);
+            assertEquals("master", d.branch);
+            assertEquals(files, d.blobs);
+            assertEquals(files, d.files());
+        }
+
+        Tree t = new Tree();
+        t.files.put("a.txt", blob);
+        t.files.put("\u00fc.txt", id);
+        t.dirs.put("d", tree);
+        Tree u = Codec.decodeTree(Codec.sealTree(Codec.encodeTree(t)));
+        assertEquals(t.files, u.files);
+        assertEquals(t.dirs, u.dirs);
+        u = Codec.decodeTree(Codec.sealTree(Codec.encodeTree(new Tree())));
+        assertTrue(u.files.isEmpty() && u.dirs.isEmpty());
+
+        byte[] unknown = Codec.encodeCommit(c);
+        unknown[4] = 9;
+        try {
+            Codec.decodeCommit(unknown);
+            fail("decoded commit format 9");
+        } catch (GitletException excp) {
+            assertEquals("Unknown commit format 9.", excp.getMessage());
+        }
+        byte[] badTree = Codec.sealTree(Codec.encodeTree(t));
+        badTree[4] = 9;
+        try {
+            Codec.decodeTree(badTree);
+            fail("decoded tree format 9");
+        } catch (GitletException excp) {
+            assertEquals("Corrupt tree.", excp.getMessage());
+        }
+    }
+
+    /** Checks that the staging area log folds its records: a later record
+     *  for a path overrides an earlier one, whichever kinds they are. */
+    @Test
+    public void stageTest() {
+        String a = Utils.sha1("a"), b = Utils.sha1("b");
+        try {
+            Stage.clear();
+            assertTrue(Stage.read().isEmpty());
+            Stage.add("x.txt", a);
+            Stage.add("x.txt", b);
+            Stage.remove("y.txt", a);
+            Stage.add("y.txt", b);
+            Stage.add("z.txt", a);
+            Stage.remove("z.txt", b);
+            Stage.add("w.txt", a);
+            Stage.unstage("w.txt");
+            Stage.unstage("v.txt");
+            Stage stage = Stage.read();
+            HashMap<String, String> added = new HashMap<>();
+            added.put("x.txt", b);
+            added.put("y.txt", b);
+            assertEquals(added, stage.added());
+            assertEquals(Collections.singletonMap("z.txt", b), stage.removed());
+            Stage.unstage("x.txt");
+            Stage.unstage("y.txt");
+            Stage.unstage("z.txt");
+            assertTrue(Stage.read().isEmpty());
+            Stage.remove("x.txt", a);
+            Stage.clear();
+            assertTrue(Stage.read().isEmpty());
+        } finally {
+            Journal.discard();
+        }
+    }
+
+    /** Checks that a repository from before the staging area log, which
+     *  kept it as the maps .gitlet/.add and .gitlet/.rm, still shows what
+     *  they stage, and that the first change copies them into the log. */
+    @Test
+    public void oldStageTest() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        File blobs = Utils.join(dir, ".gitlet", ".blobs");
+        assertEquals("", gitlet(dir, "init"));
+        Files.writeString(new File(dir, "wug.txt").toPath(), "wug");
+        assertEquals("", gitlet(dir, "add", "wug.txt"));
+        String wug = Utils.plainFilenamesIn(blobs).get(0);
+        assertEquals("", gitlet(dir, "commit", "wug"));
+        Files.writeString(new File(dir, "notwug.txt").toPath(), "notwug");
+        assertEquals("", gitlet(dir, "add", "notwug.txt"));
+        ArrayList<String> ids = new ArrayList<>(Utils.plainFilenamesIn(blobs));
+        ids.remove(wug);
+        String notwug = ids.get(0);
+
+        //as before the log, with no journal of an append to it to carry out
+        assertTrue(Utils.join(dir, ".gitlet", ".stage").delete());
+        Utils.join(dir, ".gitlet", ".journal").delete();
+        assertTrue(new File(dir, "wug.txt").delete());
+        HashMap<String, String> added = new HashMap<>(), removed = new HashMap<>();
+        added.put("notwug.txt", notwug);
+        removed.put("wug.txt", wug);
+        Utils.writeObject(Utils.join(dir, ".gitlet", ".add"), added);
+        Utils.writeObject(Utils.join(dir, ".gitlet", ".rm"), removed);
+        String status = gitlet(dir, "status");
+        assertTrue(status, status.contains("=== Staged Files ===\nnotwug.txt\n\n"));
+        assertTrue(status, status.contains("=== Removed Files ===\nwug.txt\n\n"));
+
+        Files.writeString(new File(dir, "other.txt").toPath(), "other");
+        assertEquals("", gitlet(dir, "add", "other.txt"));
+        assertTrue(Utils.join(dir, ".gitlet", ".stage").exists());
+        status = gitlet(dir, "status");
+        assertTrue(status, status.contains(
+            "=== Staged Files ===\nnotwug.txt\nother.txt\n\n"));
+        assertTrue(status, status.contains("=== Removed Files ===\nwug.txt\n\n"));
+    }
+
+    /** Checks that applying a delta to its base gives back its target,
+     *  for random edits of random bases and for empty and identical
+     *  bases and targets, and that a delta between near copies is
+     *  small. */
+    @Test
+    public void deltaTest() {
+        Random random = new Random(61);
+        byte[] empty = new byte[0];
+        byte[] text = new byte[5000];
+        random.nextBytes(text);
+        byte[][][] pairs = {
+            {empty, empty}, {empty, text}, {text, empty}, {text, text},
+            {new byte[] {1}, new byte[] {1}}, {new byte[] {1}, new byte[] {2}},
+        };
+        for (byte[][] pair : pairs) {
+            assertArrayEquals(pair[1], Delta.apply(pair[0], Delta.create(pair[0], pair[1])));
+        }
+        assertTrue(Delta.create(text, text).length < 16);
+
+        for (int trial = 0; trial < 200; trial += 1) {
+            byte[] base = new byte[random.nextInt(4000)];
+            for (int i = 0; i < base.length; i += 1) {
+                //a small alphabet, so blocks recur within the base
+                base[i] = (byte) ('a' + random.nextInt(trial % 2 == 0 ? 4 : 26));
+            }
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            int pos = 0;
+            for (int edits = random.nextInt(8); edits > 0 && pos < base.length; edits -= 1) {
+                int keep = random.nextInt(base.length - pos + 1);
+                target.write(base, pos, keep);
+                pos += keep;
+                byte[] inserted = new byte[random.nextInt(50)];
+                random.nextBytes(inserted);
+                target.write(inserted, 0, inserted.length);
+                pos += Math.min(random.nextInt(50), base.length - pos);
+            }
+            target.write(base, pos, base.length - pos);
+            byte[] t = target.toByteArray();
+            byte[] delta = Delta.create(base, t);
+            assertArrayEquals(t, Delta.apply(base, delta));
+            if (trial % 2 == 1) {
+                assertTrue(delta.length <= t.length - base.length / 2 + 500);
+            }
+        }
+    }
+
+    /** Runs Gitlet with arguments ARGS in directory DIR and returns what
+     *  it printed. */
+    private static String gitlet(File dir, String... args) throws Exception {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("gitlet.Main");
+        command.addAll(Arrays.asList(args));
+        Process p = new ProcessBuilder(command).directory(dir)
+                .redirectErrorStream(true).start();
+        String out = new String(p.getInputStream().readAllBytes());
+        p.waitFor();
+        return out;
+    }
+
+    /** Returns the commit ids listed in the log LOG. */
+    private static TreeSet<String> commitIds(String log) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String line : log.split("\n")) {
+            if (line.startsWith("commit ")) {
+                result.add(line.substring(7));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the ancestors of commit N of G, N included. */
+    private static HashSet<Integer> ancestors(CommitGraph g, int n) {
+        HashSet<Integer> result = new HashSet<>();
+        ArrayList<Integer> work = new ArrayList<>();
+        work.add(n);
+        while (!work.isEmpty()) {
+            int c = work.remove(work.size() - 1);
+            if (c != CommitGraph.NONE && result.add(c)) {
+                work.add(g.parent(c));
+                work.add(g.parent2(c));
+            }
+        }
+        return result;
+    }
+
+}
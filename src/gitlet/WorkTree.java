@@ -0,0 +1,230 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+/** The files of the working directory, found, hashed and written in
+ *  parallel.  Directories are listed and files hashed or written by tasks on a work-stealing
+ *  pool of core.threads threads (by default, one per processor), and the
+ *  results are always put together in path order, so they do not depend
+ *  on how the work was shared out.  Paths are relative to the working
+ *  directory and separated by '/'.
+ *  @author Helen Hoang, Rawan Ahmadieh
+ */
+class WorkTree {
+
+    /** The pool tasks run on, created on first use. */
+    private static ForkJoinPool pool;
+
+    /** Returns the paths of all plain files in the working directory and
+     *  its subdirectories, apart from those in .gitlet, in sorted
+     *  order. */
+    static List<String> files() {
+        return files("");
+    }
+
+    /** Returns the paths of all plain files under DIR, a path relative
+     *  to the working directory ("" for the working directory itself),
+     *  apart from those in .gitlet, in sorted order. */
+    static List<String> files(String dir) {
+        long start = Trace.start();
+        List<String> result = pool().invoke(new Walk(dir));
+        //listing order is not path order: "a.txt" comes after directory "a"
+        //but before "a/b"
+        result.sort(null);
+        Trace.LIST.add(start, result.size());
+        return result;
+    }
+
+    /** Returns a map from each of PATHS whose working file exists to the
+     *  blob id of its contents, hashing the files in parallel.  Files whose
+     *  stats match the index are not read. */
+    static TreeMap<String, String> hash(Collection<String> paths) {
+        String[] names = paths.toArray(new String[0]);
+        String[] shas = new String[names.length];
+        Index index = Index.get();
+        each(names.length, i -> shas[i] = index.hash(names[i]));
+        TreeMap<String, String> result = new TreeMap<>();
+        for (int i = 0; i < names.length; i += 1) {
+            if (shas[i] != null) {
+                result.put(names[i], shas[i]);
+            }
+        }
+        return result;
+    }
+
+    /** Brings the working directory from one commit's files to
+     *  another's.  CHANGES maps each path whose blob differs between the
+     *  two commits to its new blob id, or to null if the file goes away;
+     *  UNCHANGED maps each path the commits share to its blob id.  Files
+     *  in CHANGES are deleted or written.  Files in UNCHANGED are only
+     *  checked against the index, by their stats, and written only if they
+     *  no longer hold their blob.  Returns the number of files written.
+     *
+     *  Deleted files go first, and directories they leave empty are
+     *  removed.  Then missing directories are all created, parents before
+     *  children, so writers never race to create them.  Finally files are
+     *  written in parallel. */
+    static int checkout(SortedMap<String, String> changes, Map<String, String> unchanged) {
+        Index index = Index.get();
+        String[] kept = unchanged.keySet().toArray(new String[0]);
+        boolean[] stale = new boolean[kept.length];
+        each(kept.length, i -> stale[i] = !index.matches(kept[i], unchanged.get(kept[i])));
+
+        TreeMap<String, String> writing = new TreeMap<>();
+        TreeSet<String> emptied = new TreeSet<>(Collections.reverseOrder());
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            String name = e.getKey();
+            if (!Tree.isSafe(name)) {
+                throw Utils.error("Bad path: %s", name); //would be written outside the working tree
+            }
+            if (e.getValue() != null) {
+                writing.put(name, e.getValue());
+                continue;
+            }
+            new File(name).delete();
+            index.remove(name);
+            for (int k = name.lastIndexOf('/'); k > 0; k = name.lastIndexOf('/', k - 1)) {
+                emptied.add(name.substring(0, k));
+            }
+        }
+        for (String dir : emptied) {
+            new File(dir).delete(); //fails, as it should, unless the directory is empty
+        }
+        for (int i = 0; i < kept.length; i += 1) {
+            if (stale[i] && !Tree.isSafe(kept[i])) {
+                throw Utils.error("Bad path: %s", kept[i]);
+            } else if (stale[i]) {
+                writing.put(kept[i], unchanged.get(kept[i]));
+            }
+        }
+
+        TreeSet<String> dirs = new TreeSet<>();
+        for (String name : writing.keySet()) {
+            for (int k = name.lastIndexOf('/'); k > 0; k = name.lastIndexOf('/', k - 1)) {
+                dirs.add(name.substring(0, k));
+            }
+        }
+        for (String dir : dirs) {
+            File d = new File(dir);
+            if (d.isFile()) {
+                d.delete(); //a file the new commit replaces with a directory
+            }
+            d.mkdir();
+        }
+        String[] names = writing.keySet().toArray(new String[0]);
+        each(names.length, i -> {
+            String sha = writing.get(names[i]);
+            ObjectStore.checkout(sha, new File(names[i]));
+            index.update(names[i], sha);
+        });
+        return names.length;
+    }
+
+    /** Runs BODY for 0, ..., N - 1 in parallel, returning once all are
+     *  done.  An exception thrown by BODY is thrown again here. */
+    static void each(int n, IntConsumer body) {
+        pool().invoke(new Each(body, 0, n));
+    }
+
+    /** Returns the pool, creating it if need be. */
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            int n = Integer.parseInt(Config.get(Config.THREADS,
+                    Integer.toString(Runtime.getRuntime().availableProcessors())));
+            if (n < 1) {
+                throw Utils.error("%s must be positive.", Config.THREADS);
+            }
+            pool = new ForkJoinPool(n);
+        }
+        return pool;
+    }
+
+    /** Lists one directory, forking a task for each subdirectory. */
+    private static class Walk extends RecursiveTask<List<String>> {
+        private static final long serialVersionUID = -2817440931825096482L;
+
+        /** Lists DIR, relative to the working directory. */
+        Walk(String dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<String> compute() {
+            File d = dir.isEmpty() ? new File(".") : new File(dir);
+            String[] names = d.list();
+            List<String> result = new ArrayList<>();
+            if (names == null) {
+                return result;
+            }
+            Arrays.sort(names);
+            //each name is a file path or a listing still to be joined
+            Object[] parts = new Object[names.length];
+            for (int i = 0; i < names.length; i += 1) {
+                String path = dir.isEmpty() ? names[i] : dir + "/" + names[i];
+                File f = new File(d, names[i]);
+                if (Files.isSymbolicLink(f.toPath())) {
+                    continue;
+                } else if (f.isDirectory()) {
+                    if (!path.equals(Main.GITLET_FOLDER.getName())) {
+                        parts[i] = new Walk(path).fork();
+                    }
+                } else if (f.isFile()) {
+                    parts[i] = path;
+                }
+            }
+            for (Object part : parts) {
+                if (part instanceof String) {
+                    result.add((String) part);
+                } else if (part != null) {
+                    result.addAll(((Walk) part).join());
+                }
+            }
+            return result;
+        }
+
+        /** The directory listed. */
+        private final String dir;
+    }
+
+    /** Runs BODY for each index in a range, splitting the range in two
+     *  while it holds more than one. */
+    private static class Each extends RecursiveAction {
+        private static final long serialVersionUID = 4637925580150771539L;
+
+        /** Runs BODY for LO, ..., HI - 1. */
+        Each(IntConsumer body, int lo, int hi) {
+            this.body = body;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                body.accept(lo);
+            } else if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Each(body, lo, mid), new Each(body, mid, hi));
+            }
+        }
+
+        /** The work for one index. */
+        private final IntConsumer body;
+        /** Range of indices handled. */
+        private final int lo, hi;
+    }
+}